@@ -0,0 +1,395 @@
+package client;
+
+import common.BinaryCodec;
+import common.Message;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Client tanpa UI untuk load test: membuka banyak koneksi ke ServerMain dengan
+ * protokol yang sama seperti ClientMain, menjawab setiap soal setelah jeda
+ * "berpikir" dan dengan persentase jawaban salah tertentu.
+ *
+ *   java -cp out client.LoadBot [--host=127.0.0.1] [--port=5000] [--bots=100]
+ *        [--think-ms=500] [--think=exp|uniform|fixed] [--error-rate=0.1]
+ *        [--codec=bin|java] [--delta=true] [--duration=60] [--ramp-ms=5]
+ *        [--operation=+|-|*|/|mix] [--server-metrics=9100]
+ *
+ * Latensi diukur dari jawaban dikirim sampai balasan pertama berikutnya
+ * (QUESTION, atau RESULT untuk client non-delta), jadi waktu berpikir bot tidak
+ * ikut terhitung. Setelah GAME_OVER bot connect lagi untuk balapan berikutnya.
+ * Dengan --operation=mix bot ke-i memakai operasi ke-(i mod 4).
+ *
+ * Dengan --server-metrics (port --metrics-port server) ringkasan akhir juga
+ * mencatat jumlah thread, heap dan RSS server selagi semua bot masih
+ * terhubung, untuk membandingkan biaya per koneksi antar --mode.
+ */
+public class LoadBot {
+    private static final String[] OPERATIONS = { "+", "-", "*", "/" };
+
+    private final String host;
+    private final int port;
+    private final boolean binary;
+    private final boolean delta;
+    private final long thinkMillis;
+    private final String thinkDistribution;
+    private final double errorRate;
+
+    private final ScheduledExecutorService answers;
+    private final Histogram latency = new Histogram();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong games = new AtomicLong();
+    private final AtomicInteger connected = new AtomicInteger();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile boolean running = true;
+
+    LoadBot(String host, int port, boolean binary, boolean delta, long thinkMillis,
+            String thinkDistribution, double errorRate) {
+        this.host = host;
+        this.port = port;
+        this.binary = binary;
+        this.delta = delta;
+        this.thinkMillis = thinkMillis;
+        this.thinkDistribution = thinkDistribution;
+        this.errorRate = errorRate;
+        this.answers = Executors.newScheduledThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread t = new Thread(r, "bot-answers");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = "127.0.0.1";
+        int port = 5000;
+        int bots = 100;
+        long thinkMillis = 500;
+        String think = "exp";
+        double errorRate = 0.1;
+        boolean binary = true;
+        boolean delta = true;
+        long durationSeconds = 60;
+        long rampMillis = 5;
+        String operation = "+";
+        int serverMetricsPort = 0;
+
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--host=")) host = value;
+            else if (arg.startsWith("--port=")) port = Integer.parseInt(value);
+            else if (arg.startsWith("--bots=")) bots = Integer.parseInt(value);
+            else if (arg.startsWith("--think-ms=")) thinkMillis = Long.parseLong(value);
+            else if (arg.startsWith("--think=")) think = value;
+            else if (arg.startsWith("--error-rate=")) errorRate = Double.parseDouble(value);
+            else if (arg.startsWith("--codec=")) binary = !"java".equals(value);
+            else if (arg.startsWith("--delta=")) delta = Boolean.parseBoolean(value);
+            else if (arg.startsWith("--duration=")) durationSeconds = Long.parseLong(value);
+            else if (arg.startsWith("--ramp-ms=")) rampMillis = Long.parseLong(value);
+            else if (arg.startsWith("--operation=")) operation = value;
+            else if (arg.startsWith("--server-metrics=")) serverMetricsPort = Integer.parseInt(value);
+            else System.out.println("Unknown option: " + arg);
+        }
+
+        LoadBot load = new LoadBot(host, port, binary, delta, thinkMillis, think, errorRate);
+        System.out.println("Starting " + bots + " bots against " + host + ":" + port
+            + " (codec=" + (binary ? BinaryCodec.NAME : "java") + ", delta=" + delta
+            + ", think=" + think + " " + thinkMillis + "ms, error-rate=" + errorRate
+            + ", operation=" + operation + ")");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < bots; i++) {
+            String name = "bot" + i;
+            String op = "mix".equals(operation) ? OPERATIONS[i % OPERATIONS.length] : operation;
+            // Stack kecil: ribuan bot = ribuan thread pembaca
+            Thread t = new Thread(null, () -> load.runBot(name, op), name, 256 * 1024);
+            t.setDaemon(true);
+            t.start();
+            if (rampMillis > 0) Thread.sleep(rampMillis);
+        }
+
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long lastReceived = 0;
+        long lastTick = start;
+        while (System.nanoTime() < end) {
+            Thread.sleep(Math.min(5000, Math.max(1, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()))));
+            long now = System.nanoTime();
+            long r = load.received.get();
+            System.out.printf("[%5.1fs] connected=%d games=%d recv=%.0f msg/s p50=%.2fms p99=%.2fms%n",
+                (now - start) / 1e9, load.connected.get(), load.games.get(),
+                (r - lastReceived) * 1e9 / (now - lastTick),
+                load.latency.percentile(50) / 1000.0, load.latency.percentile(99) / 1000.0);
+            lastReceived = r;
+            lastTick = now;
+        }
+        // Diambil sebelum bot berhenti, selagi semua koneksi masih terbuka
+        String server = serverMetricsPort > 0 ? serverResources(host, serverMetricsPort) : null;
+        load.running = false;
+        load.report((System.nanoTime() - start) / 1e9);
+        if (server != null) System.out.println(server);
+    }
+
+    /** Thread dan memori server dari /metrics, dalam satu baris ringkasan. */
+    private static String serverResources(String host, int port) {
+        long clients = -1, threads = -1, peak = -1, heap = -1, rss = -1;
+        try (InputStream in = new URL("http://" + host + ":" + port + "/metrics").openStream()) {
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                int space = line.lastIndexOf(' ');
+                if (space < 0) continue;
+                String name = line.substring(0, space);
+                long value = Long.parseLong(line.substring(space + 1));
+                if (name.equals("clients_connected")) clients = value;
+                else if (name.equals("jvm_threads_live")) threads = value;
+                else if (name.equals("jvm_threads_peak")) peak = value;
+                else if (name.equals("jvm_heap_used_bytes")) heap = value;
+                else if (name.equals("process_resident_bytes")) rss = value;
+            }
+        } catch (IOException | RuntimeException e) {
+            return "server        metrics unavailable: " + e;
+        }
+        return String.format("server        clients=%d threads=%d (peak %d) heap=%.1f MB rss=%.1f MB",
+            clients, threads, peak, heap / 1e6, rss / 1e6);
+    }
+
+    private void report(double seconds) {
+        System.out.println();
+        System.out.println("==== LoadBot summary ====");
+        System.out.printf("duration      %.1f s%n", seconds);
+        System.out.printf("games         %d%n", games.get());
+        System.out.printf("errors        %d%n", errors.get());
+        System.out.printf("sent          %d (%.0f msg/s)%n", sent.get(), sent.get() / seconds);
+        System.out.printf("received      %d (%.0f msg/s)%n", received.get(), received.get() / seconds);
+        System.out.printf("answers       %d%n", latency.count());
+        System.out.printf("latency p50   %.3f ms%n", latency.percentile(50) / 1000.0);
+        System.out.printf("latency p99   %.3f ms%n", latency.percentile(99) / 1000.0);
+        System.out.printf("latency p999  %.3f ms%n", latency.percentile(99.9) / 1000.0);
+        System.out.printf("latency max   %.3f ms%n", latency.max() / 1000.0);
+    }
+
+    /** Satu pemain: connect, main sampai GAME_OVER, lalu connect lagi selama masih berjalan. */
+    private void runBot(String name, String operation) {
+        while (running) {
+            try (Socket socket = new Socket(host, port)) {
+                socket.setTcpNoDelay(true);
+                connected.incrementAndGet();
+                try {
+                    playOneGame(socket, name, operation);
+                } finally {
+                    connected.decrementAndGet();
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                if (!running) return;
+                errors.incrementAndGet();
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void playOneGame(Socket socket, String name, String operation) throws IOException, ClassNotFoundException {
+        OutputStream rawOut = new BufferedOutputStream(socket.getOutputStream());
+        ObjectOutputStream out = new ObjectOutputStream(rawOut);
+        Session session = new Session(rawOut, out);
+
+        Message connect = new Message(Message.Type.CONNECT).put("name", name).put("operation", operation);
+        if (binary) connect.put("codec", BinaryCodec.NAME);
+        if (delta) connect.put("delta", true);
+        connect.put("heartbeat", true);
+        session.send(connect);
+
+        ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+        InputStream rawIn = null;
+        boolean binaryIn = false;
+
+        while (running) {
+            Message m = binaryIn ? BinaryCodec.read(rawIn) : (Message) in.readObject();
+            received.incrementAndGet();
+
+            switch (m.type) {
+                case CONNECT_ACK:
+                    if (BinaryCodec.NAME.equals(m.get("codec"))) {
+                        binaryIn = true;
+                        rawIn = new BufferedInputStream(socket.getInputStream());
+                        session.binary = true;
+                    }
+                    break;
+                case RESULT:
+                    session.replied();
+                    break;
+                case QUESTION:
+                    session.replied();
+                    scheduleAnswer(session, (Integer) m.get("qId"), (String) m.get("text"));
+                    break;
+                case POSITIONS:
+                    // Bot tidak menggambar apa pun; seq yang bolong tidak perlu di-resync
+                    break;
+                case PING:
+                    session.send(m);
+                    break;
+                case GAME_OVER:
+                    games.incrementAndGet();
+                    return;
+                case ERROR:
+                    errors.incrementAndGet();
+                    return;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void scheduleAnswer(Session session, int qId, String text) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int answer = solve(text);
+        if (rnd.nextDouble() < errorRate) {
+            answer += 1 + rnd.nextInt(5);
+        }
+        Message msg = new Message(Message.Type.ANSWER).put("qId", qId).put("answer", answer);
+        answers.schedule(() -> {
+            try {
+                session.sendAnswer(msg);
+            } catch (IOException e) {
+                // Koneksi sudah ditutup; thread pembaca yang menangani reconnect
+            }
+        }, thinkTime(rnd), TimeUnit.MILLISECONDS);
+    }
+
+    private long thinkTime(Random rnd) {
+        switch (thinkDistribution) {
+            case "fixed":
+                return thinkMillis;
+            case "uniform":
+                return (long) (rnd.nextDouble() * 2 * thinkMillis);
+            default:
+                return (long) (-Math.log(1 - rnd.nextDouble()) * thinkMillis);
+        }
+    }
+
+    /** Menghitung "a op b" seperti yang dikirim server. */
+    static int solve(String text) {
+        String[] parts = text.split(" ");
+        int a = Integer.parseInt(parts[0]);
+        int b = Integer.parseInt(parts[2]);
+        switch (parts[1]) {
+            case "-": return a - b;
+            case "×": case "*": return a * b;
+            case "÷": case "/": return a / b;
+            default: return a + b;
+        }
+    }
+
+    /** State kirim satu koneksi; ditulis dari thread jawaban, dibaca dari thread pembaca. */
+    private final class Session {
+        final OutputStream rawOut;
+        final ObjectOutputStream out;
+        volatile boolean binary;
+        /** Waktu jawaban terakhir dikirim, 0 kalau sudah dibalas. */
+        volatile long answeredAt;
+
+        Session(OutputStream rawOut, ObjectOutputStream out) {
+            this.rawOut = rawOut;
+            this.out = out;
+        }
+
+        synchronized void send(Message m) throws IOException {
+            if (binary) {
+                rawOut.write(BinaryCodec.encode(m));
+                rawOut.flush();
+            } else {
+                out.writeObject(m);
+                out.flush();
+            }
+            sent.incrementAndGet();
+        }
+
+        void sendAnswer(Message m) throws IOException {
+            answeredAt = System.nanoTime();
+            send(m);
+        }
+
+        void replied() {
+            long at = answeredAt;
+            if (at != 0) {
+                answeredAt = 0;
+                latency.record((System.nanoTime() - at) / 1000);
+            }
+        }
+    }
+
+    /**
+     * Histogram latensi (mikrodetik) log-linear: 64 bucket per pangkat dua,
+     * presisi ~1.5%, tanpa lock dan tanpa alokasi saat mencatat.
+     */
+    static final class Histogram {
+        private static final int SUB_BUCKETS = 64;
+        private static final int SUB_BITS = 6;
+        private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS) * SUB_BUCKETS + SUB_BUCKETS);
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long micros) {
+            if (micros < 0) micros = 0;
+            counts.incrementAndGet(index(micros));
+            total.incrementAndGet();
+            long m;
+            while (micros > (m = max.get()) && !max.compareAndSet(m, micros)) {
+                // retry
+            }
+        }
+
+        long count() {
+            return total.get();
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        /** Batas atas bucket yang memuat persentil tersebut, dalam mikrodetik. */
+        long percentile(double p) {
+            long n = total.get();
+            if (n == 0) return 0;
+            long target = (long) Math.ceil(n * p / 100.0);
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= target) return Math.min(upperBound(i), max.get());
+            }
+            return max.get();
+        }
+
+        private static int index(long v) {
+            if (v < SUB_BUCKETS) return (int) v;
+            int exponent = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS + 1;
+            int sub = (int) (v >>> exponent) - SUB_BUCKETS / 2;
+            return exponent * (SUB_BUCKETS / 2) + SUB_BUCKETS / 2 + sub;
+        }
+
+        private static long upperBound(int index) {
+            if (index < SUB_BUCKETS) return index;
+            int exponent = (index - SUB_BUCKETS / 2) / (SUB_BUCKETS / 2);
+            int sub = (index - SUB_BUCKETS / 2) % (SUB_BUCKETS / 2) + SUB_BUCKETS / 2;
+            return ((long) (sub + 1) << exponent) - 1;
+        }
+    }
+}
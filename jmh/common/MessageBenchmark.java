@@ -0,0 +1,75 @@
+package common;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** Round trip Message lewat Java serialization dibanding BinaryCodec, per tipe pesan. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageBenchmark {
+    @Param({ "ANSWER", "QUESTION", "RESULT", "POSITIONS" })
+    public Message.Type type;
+
+    private Message message;
+
+    @Setup
+    public void setup() {
+        Map<Integer, Integer> posMap = new HashMap<>();
+        Map<Integer, String> names = new HashMap<>();
+        for (int i = 1; i <= 8; i++) {
+            posMap.put(i, i * 10);
+            names.put(i, "Player" + i);
+        }
+        switch (type) {
+            case ANSWER:
+                message = new Message(Message.Type.ANSWER).put("qId", 17).put("answer", 42);
+                break;
+            case QUESTION:
+                message = new Message(Message.Type.QUESTION).put("qId", 18).put("text", "12 + 7").put("correct", true);
+                break;
+            case RESULT:
+                message = new Message(Message.Type.RESULT).put("posMap", posMap).put("names", names).put("seq", 3);
+                break;
+            default:
+                message = new Message(Message.Type.POSITIONS).put("seq", 4).put("ids", new int[] { 2 })
+                    .put("pos", new int[] { 30 }).put("joined", new HashMap<>()).put("left", new int[0]);
+                break;
+        }
+    }
+
+    @Benchmark
+    public Object java() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(message);
+        out.flush();
+        return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    @Benchmark
+    public Message binary() throws Exception {
+        return BinaryCodec.decode(ByteBuffer.wrap(BinaryCodec.encode(message)));
+    }
+}
@@ -0,0 +1,62 @@
+package server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/** Satu pemain bergerak lalu broadcastPositions ke semua pemain di room. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BroadcastBenchmark {
+    @Param({ "2", "50", "500" })
+    public int players;
+
+    /** true: client POSITIONS (delta), false: client lama yang menerima RESULT penuh. */
+    @Param({ "true", "false" })
+    public boolean delta;
+
+    private GameRoom room;
+    private TimerWheel timers;
+    private ExecutorService executor;
+    private int next;
+
+    @Setup
+    public void setup() {
+        timers = new TimerWheel("jmh-timers", 5, 512);
+        executor = ServerThreads.newExecutor("jmh-room");
+        room = new GameRoom(1, players, timers, executor, 0, new QuestionPool(), 0, 0, 0, false);
+        for (int i = 0; i < players; i++) {
+            room.tryRegister(new NullConnection(delta), "P" + i, QuestionPool.ADD);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        timers.stop();
+    }
+
+    @Benchmark
+    public GameRoom broadcastPositions() {
+        int playerId = 1 + (next++ % players);
+        room.players.advance(playerId, 0, Integer.MAX_VALUE);
+        room.broadcastPositions();
+        return room;
+    }
+}
@@ -0,0 +1,104 @@
+package server;
+
+import common.BinaryCodec;
+import common.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Biaya encode satu broadcast ke N koneksi: POSITIONS untuk client biner,
+ * RESULT 8 pemain untuk client Java serialization. "perConnection" meniru
+ * perilaku lama (setiap koneksi meng-encode sendiri), "shared" memakai
+ * SharedFrames seperti writer sekarang.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BroadcastEncodeBenchmark {
+    @Param({ "2", "50", "500" })
+    public int players;
+
+    private final Map<Integer, Integer> posMap = new HashMap<>();
+    private final Map<Integer, String> names = new HashMap<>();
+    private ByteBuffer[] views;
+    private ObjectOutputStream[] streams;
+
+    @Setup
+    public void setup() throws IOException {
+        for (int i = 1; i <= 8; i++) {
+            posMap.put(i, i * 10);
+            names.put(i, "Player" + i);
+        }
+        views = new ByteBuffer[players];
+        streams = new ObjectOutputStream[players];
+        for (int i = 0; i < players; i++) {
+            streams[i] = new ObjectOutputStream(OutputStream.nullOutputStream());
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer[] binaryPerConnection() {
+        Message m = positions();
+        for (int i = 0; i < players; i++) {
+            views[i] = ByteBuffer.wrap(BinaryCodec.encode(m));
+        }
+        return views;
+    }
+
+    @Benchmark
+    public ByteBuffer[] binaryShared() {
+        Message m = positions().shared();
+        for (int i = 0; i < players; i++) {
+            views[i] = ByteBuffer.wrap(SharedFrames.binary(m)).asReadOnlyBuffer();
+        }
+        return views;
+    }
+
+    @Benchmark
+    public Message javaPerConnection() throws IOException {
+        Message m = new Message(Message.Type.RESULT).put("posMap", posMap).put("names", names);
+        for (ObjectOutputStream out : streams) {
+            out.writeObject(m);
+            out.flush();
+            // Tanpa reset tabel handle mengingat setiap pesan dan m cukup ditulis sebagai referensi
+            out.reset();
+        }
+        return m;
+    }
+
+    @Benchmark
+    public Message javaShared() throws IOException {
+        Message m = new Message(Message.Type.RESULT).put("posMap", posMap).put("names", names).shared();
+        for (ObjectOutputStream out : streams) {
+            out.write(SharedFrames.java(m));
+            out.reset();
+            out.flush();
+        }
+        return m;
+    }
+
+    private static Message positions() {
+        return new Message(Message.Type.POSITIONS).put("seq", 4).put("ids", new int[] { 2 })
+            .put("pos", new int[] { 30 }).put("joined", new HashMap<>()).put("left", new int[0]);
+    }
+}
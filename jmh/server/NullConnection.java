@@ -0,0 +1,23 @@
+package server;
+
+import common.Message;
+
+/** Koneksi palsu untuk benchmark: tidak mengirim apa pun, hanya mencatat qId soal terakhir. */
+class NullConnection extends Connection {
+    volatile int lastQId;
+
+    NullConnection(boolean delta) {
+        this.deltaPositions = delta;
+    }
+
+    @Override
+    public void send(Message msg) {
+        if (msg.type == Message.Type.QUESTION) {
+            lastQId = (Integer) msg.get("qId");
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,74 @@
+package server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hanya update state jawaban di PlayerTable: klaim soal dengan CAS lalu
+ * geser posisi (maju dan mundur bergantian supaya tidak mentok di garis
+ * finish). Tanpa Message, tanpa broadcast; dengan -prof gc seharusnya
+ * gc.alloc.rate.norm ~0 B/op.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerTableBenchmark {
+    private static final int PLAYERS = 64;
+
+    @State(Scope.Benchmark)
+    public static class Table {
+        final PlayerTable players = new PlayerTable(PLAYERS);
+        final AtomicInteger nextPlayer = new AtomicInteger();
+
+        @Setup
+        public void setup() {
+            for (int i = 0; i < PLAYERS; i++) {
+                int id = players.add("P" + i, QuestionPool.ADD, new NullConnection(true));
+                players.claimQuestion(id, 0L, PlayerTable.pack(1, 42));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Player {
+        int id;
+
+        @Setup
+        public void setup(Table table) {
+            id = 1 + table.nextPlayer.getAndIncrement() % PLAYERS;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int claimAndAdvance(Table table, Player player) {
+        return answer(table.players, player.id);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int claimAndAdvanceContended(Table table, Player player) {
+        return answer(table.players, player.id);
+    }
+
+    private static int answer(PlayerTable players, int id) {
+        long current = players.question(id);
+        int qId = PlayerTable.questionId(current);
+        if (!players.claimQuestion(id, current, PlayerTable.pack(qId + 1, qId))) return -1;
+        return players.advance(id, (qId & 1) == 0 ? 10 : -10, 100);
+    }
+}
@@ -0,0 +1,134 @@
+package server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * GameRoom.processAnswer di satu room berisi 64 pemain dengan 1, 8 dan 64
+ * thread yang menjawab; setiap thread menjawab untuk pemainnya sendiri.
+ * Jawabannya selalu salah supaya balapan tidak pernah selesai, jadi yang terukur adalah klaim soal, ambil soal
+ * berikutnya, markDirty dan kirim QUESTION.
+ *
+ * engine=loop meniru --engine=loop: thread hanya publish ke ring dan satu
+ * GameLoop yang menerapkan. Kalau ring penuh publish menunggu, jadi angkanya
+ * dibatasi laju game loop. engine=detached memakai processAnswer langsung
+ * tetapi semua pemain DETACHED, sehingga tidak ada pesan yang dibuat.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessAnswerBenchmark {
+    private static final int PLAYERS = 64;
+
+    @State(Scope.Benchmark)
+    public static class Room {
+        @Param({ "inline", "loop", "detached" })
+        public String engine;
+
+        final AtomicInteger nextPlayer = new AtomicInteger();
+        NullConnection[] connections;
+        GameRoom room;
+        GameLoop loop;
+        boolean detached;
+        private TimerWheel timers;
+        private ExecutorService executor;
+
+        @Setup
+        public void setup() {
+            timers = new TimerWheel("jmh-timers", 5, 512);
+            executor = ServerThreads.newExecutor("jmh-room");
+            switch (engine) {
+                case "loop":
+                    loop = new GameLoop(1 << 16, 1024);
+                    room = new GameRoom(1, PLAYERS, timers, executor, BroadcastScheduler.BATCHED,
+                        new QuestionPool(), 0, 0, 0, false);
+                    break;
+                case "detached":
+                    // Kesulitan adaptif dan batas waktu soal ikut dihitung; batasnya tidak pernah lewat
+                    room = new GameRoom(1, PLAYERS, timers, executor, BroadcastScheduler.BATCHED,
+                        new QuestionPool(), 60_000, 1, 0, true);
+                    break;
+                default:
+                    room = new GameRoom(1, PLAYERS, timers, executor, 20, new QuestionPool(), 0, 0, 0, false);
+                    break;
+            }
+            connections = new NullConnection[PLAYERS];
+            for (int i = 0; i < PLAYERS; i++) {
+                connections[i] = new NullConnection(true);
+                room.tryRegister(connections[i], "P" + i, QuestionPool.ADD);
+            }
+            room.startNow();
+            detached = engine.equals("detached");
+            if (detached) {
+                for (NullConnection c : connections) {
+                    room.players.detach(c.playerId);
+                }
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            executor.shutdownNow();
+            timers.stop();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Player {
+        NullConnection connection;
+
+        @Setup
+        public void setup(Room room) {
+            connection = room.connections[room.nextPlayer.getAndIncrement() % PLAYERS];
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object uncontended(Room room, Player player) {
+        return answer(room, player);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object contended(Room room, Player player) {
+        return answer(room, player);
+    }
+
+    /** Satu thread per pemain di room penuh. */
+    @Benchmark
+    @Threads(64)
+    public Object contended64(Room room, Player player) {
+        return answer(room, player);
+    }
+
+    private static Object answer(Room room, Player player) {
+        NullConnection c = player.connection;
+        if (room.loop != null) {
+            room.loop.publish(c, c.lastQId, Integer.MIN_VALUE);
+        } else if (room.detached) {
+            int qId = PlayerTable.questionId(room.room.players.question(c.playerId));
+            room.room.processAnswer(c.playerId, qId, Integer.MIN_VALUE);
+        } else {
+            room.room.processAnswer(c.playerId, c.lastQId, Integer.MIN_VALUE);
+        }
+        return c;
+    }
+}
@@ -0,0 +1,80 @@
+package server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QuestionGenerator.make per operasi dibanding tabel QuestionPool dengan
+ * rentang operand yang sama (EASY), ditambah jalur --difficulty=adaptive:
+ * update EWMA lalu ambil soal di tingkat barunya.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QuestionBenchmark {
+    @Param({ "+", "-", "*", "/" })
+    public String operation;
+
+    private QuestionPool pool;
+    private int operationIndex;
+
+    @State(Scope.Thread)
+    public static class Player {
+        long difficulty = Difficulty.INITIAL;
+    }
+
+    @Setup
+    public void setup() {
+        pool = new QuestionPool();
+        operationIndex = QuestionPool.operationIndex(operation);
+    }
+
+    @Benchmark
+    public Object make() {
+        return QuestionGenerator.make(operation);
+    }
+
+    @Benchmark
+    public QuestionPool.Entry pool() {
+        return pool.take(operationIndex, QuestionPool.EASY);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public QuestionPool.Entry poolContended() {
+        return pool.take(operationIndex, QuestionPool.NORMAL);
+    }
+
+    @Benchmark
+    public QuestionPool.Entry adaptive(Player player) {
+        long latency = ThreadLocalRandom.current().nextInt(500, 6000);
+        player.difficulty = Difficulty.update(player.difficulty, (latency & 3) != 0, latency);
+        return pool.take(operationIndex, Difficulty.level(player.difficulty));
+    }
+
+    /** Membangun semua tabel sekali, seperti saat server start. */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public QuestionPool build() {
+        return new QuestionPool();
+    }
+}
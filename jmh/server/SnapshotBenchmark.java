@@ -0,0 +1,83 @@
+package server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 10k pemain di room 8 orang yang sedang balapan. Menulis snapshot diukur
+ * per operasi; restore (baca file, bangun ulang semua room) hanya sekali per
+ * server, jadi diukur sebagai single shot ke server yang baru.
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+    private static final int PLAYERS = 10_000;
+
+    private Path file;
+    private Snapshot snapshot;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("snapshot", ".bin");
+        Files.delete(file);
+        ServerMain server = new ServerMain(20, 4, 8, 256, 0, 0, 0, false, false);
+        for (int i = 0; i < PLAYERS; i++) {
+            server.registerPlayer(new NullConnection(true), "Player" + i);
+        }
+        for (GameRoom room : server.rooms()) {
+            room.startNow();
+        }
+        snapshot = new Snapshot(server, file);
+        snapshot.write();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /** Server kosong yang baru untuk setiap restore. */
+    @State(Scope.Thread)
+    public static class Restart {
+        ServerMain server;
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            server = new ServerMain(20, 4, 8, 256, 0, 0, 0, false, false);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Snapshot write() throws IOException {
+        snapshot.write();
+        return snapshot;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public int restore(Restart restart) throws IOException {
+        return new Snapshot(restart.server, file).restore(30_000);
+    }
+}
@@ -0,0 +1,102 @@
+package server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 10k pemain dengan 20k balapan 8 orang. Yang diukur: biaya pencatatan per
+ * jawaban di jalur panas, dan query leaderboard (array top-K yang sudah jadi,
+ * lalu dirender ke teks seperti di /leaderboard).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatsBenchmark {
+    private Path file;
+    private PlayerTable table;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("stats", ".bin");
+        Files.delete(file);
+        StatsStore.open(file);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int race = 0; race < 20_000; race++) {
+            List<StatsStore.Result> results = new ArrayList<>(8);
+            int winner = random.nextInt(8);
+            for (int p = 0; p < 8; p++) {
+                int[] latency = new int[StatsStore.LATENCY_BUCKETS];
+                for (int a = 0; a < 12; a++) {
+                    latency[StatsStore.latencyBucket(300 + random.nextInt(3000))]++;
+                }
+                results.add(new StatsStore.Result("Player" + random.nextInt(10_000), p == winner,
+                    QuestionPool.ADD, 12, 10 + random.nextInt(3), latency));
+            }
+            StatsStore.recordRace(results);
+        }
+        // Antrian stats-store sudah kosong setelah query pertama yang lewat thread itu
+        StatsStore.playerStats("Player0");
+
+        table = new PlayerTable(8);
+        for (int i = 0; i < 8; i++) {
+            table.add("Player" + i, QuestionPool.ADD, new NullConnection(true));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public PlayerTable recordAnswer() {
+        int id = ThreadLocalRandom.current().nextInt(1, 9);
+        long now = System.nanoTime();
+        table.setAsked(id, now - 1_500_000);
+        table.recordAnswer(id, (now & 3) != 0, now);
+        return table;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object leaderboard() {
+        return StatsStore.leaderboard(10);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object leaderboardContended() {
+        return StatsStore.leaderboard(10);
+    }
+
+    @Benchmark
+    public String renderLeaderboard() {
+        return StatsStore.renderLeaderboard(10);
+    }
+
+    @Benchmark
+    public String playerStats() {
+        return StatsStore.playerStats("Player" + ThreadLocalRandom.current().nextInt(10_000));
+    }
+}
@@ -0,0 +1,98 @@
+package server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pola timer server yang sibuk: 100k timer menunggu (mis. batas waktu soal
+ * 10-60 detik untuk 100k pemain), dan setiap operasi membatalkan satu timer
+ * lalu menjadwalkan penggantinya, seperti saat pemain menjawab. TimerWheel
+ * dibanding ScheduledThreadPoolExecutor.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimerBenchmark {
+    private static final int PENDING = 100_000;
+    private static final Runnable NOOP = () -> { };
+
+    @Param({ "wheel", "executor" })
+    public String timers;
+
+    private TimerWheel wheel;
+    private TimerWheel.Timeout[] timeouts;
+    private ScheduledThreadPoolExecutor executor;
+    private ScheduledFuture<?>[] futures;
+
+    @Setup
+    public void setup() {
+        if (timers.equals("wheel")) {
+            wheel = new TimerWheel("jmh-wheel", 5, 512);
+            timeouts = new TimerWheel.Timeout[PENDING];
+            for (int i = 0; i < PENDING; i++) {
+                timeouts[i] = wheel.schedule(NOOP, delayMillis(), TimeUnit.MILLISECONDS);
+            }
+        } else {
+            executor = new ScheduledThreadPoolExecutor(1);
+            executor.setRemoveOnCancelPolicy(true);
+            futures = new ScheduledFuture<?>[PENDING];
+            for (int i = 0; i < PENDING; i++) {
+                futures[i] = executor.schedule(NOOP, delayMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (wheel != null) wheel.stop();
+        if (executor != null) executor.shutdownNow();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object reschedule() {
+        return rescheduleOne();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object rescheduleContended() {
+        return rescheduleOne();
+    }
+
+    /** Timer yang sudah dibatalkan thread lain dilewati, seperti jawaban yang kalah klaim. */
+    private Object rescheduleOne() {
+        int i = ThreadLocalRandom.current().nextInt(PENDING);
+        if (wheel != null) {
+            TimerWheel.Timeout old = timeouts[i];
+            if (old.cancel()) timeouts[i] = wheel.schedule(NOOP, delayMillis(), TimeUnit.MILLISECONDS);
+            return old;
+        }
+        ScheduledFuture<?> old = futures[i];
+        if (old.cancel(false)) futures[i] = executor.schedule(NOOP, delayMillis(), TimeUnit.MILLISECONDS);
+        return old;
+    }
+
+    private static long delayMillis() {
+        return 10_000 + ThreadLocalRandom.current().nextInt(50_000);
+    }
+}
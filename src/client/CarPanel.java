@@ -32,6 +32,23 @@ public class CarPanel extends JPanel {
         this.names = newNames;
         repaint();
     }
+
+    /** Menerapkan delta POSITIONS langsung ke state yang ada (tanpa snapshot baru). */
+    public void updateState(int[] ids, int[] newPos, Map<Integer, String> joined, int[] left) {
+        if (joined != null) {
+            names.putAll(joined);
+        }
+        for (int i = 0; i < ids.length; i++) {
+            positions.put(ids[i], newPos[i]);
+        }
+        if (left != null) {
+            for (int id : left) {
+                positions.remove(id);
+                names.remove(id);
+            }
+        }
+        repaint();
+    }
     public int getMyPosition(int playerId) {
         return positions.getOrDefault(playerId, 0);
     }
@@ -1,18 +1,23 @@
 package client;
 
+import common.BinaryCodec;
 import common.Message;
 
 import javax.swing.*;
 import javax.swing.border.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.BufferedInputStream;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -25,14 +30,23 @@ public class ClientMain {
     private JFrame frame;
     private JTextField tfName, tfServerIP, tfAnswer;
     private JButton btnConnect;
+    private JComboBox<String> cbOperation;
     private CarPanel carPanel;
     private PodiumPanel podiumPanel;
     private JLabel lblQuestion;
     private JLabel lblStatus;
     private ObjectOutputStream out;
     private ObjectInputStream in;
+    private OutputStream rawOut;
+    private volatile boolean binary = false;
     private int playerId;
-    private String myOp;
+    // Room dan token resume balapan yang belum selesai; dikirim lagi saat connect supaya kembali ke slot yang sama
+    private volatile int roomId;
+    private volatile long resumeToken;
+    // Operasi soal yang dipilih; simbol sama dengan QuestionPool.OPERATIONS di server
+    private static final String[] OPERATIONS = { "+", "-", "*", "/" };
+    private static final String[] OPERATION_NAMES = { "Addition", "Subtraction", "Multiplication", "Division" };
+    private String myOp = "+";
     private JPanel leftPanel;
     
     
@@ -40,6 +54,10 @@ public class ClientMain {
     private Clip backgroundMusicClip;
     private volatile boolean musicPlaying = false;
     private static final int COUNTDOWN_DURATION = 10;
+    // Backoff reconnect: 250 ms, 500 ms, ... maksimal 4 detik, menyerah setelah 30 detik (masa tahan slot di server)
+    private static final long RECONNECT_INITIAL_MILLIS = 250;
+    private static final long RECONNECT_MAX_MILLIS = 4000;
+    private static final long RECONNECT_GIVE_UP_MILLIS = 30_000;
     private Clip countdownClip;
     
     // Position tracking untuk detect correct/wrong answer
@@ -47,6 +65,8 @@ public class ClientMain {
     private volatile int currentQuestionId = -1; 
     private volatile boolean waitingForResult = false; 
     private volatile int lastSubmittedQId = -1; 
+    private int lastPositionSeq = 0;
+    private boolean resyncPending = false;
 
     // Colorful theme colors
     private final Color PRIMARY_ORANGE = new Color(255, 138, 0);
@@ -312,6 +332,13 @@ public class ClientMain {
         tfName = createTextField("", 10);
         connectionPanel.add(tfName);
 
+        // Operation
+        connectionPanel.add(createLabel("Operation:"));
+        cbOperation = new JComboBox<>(new String[] { "+ Addition", "- Subtraction", "× Multiplication", "÷ Division" });
+        cbOperation.setFont(new Font("Comic Sans MS", Font.PLAIN, 14));
+        cbOperation.setBackground(BG_WHITE);
+        connectionPanel.add(cbOperation);
+
         // Connect Button
         btnConnect = createColorfulButton("Connect", PRIMARY_GREEN);
         btnConnect.addActionListener(e -> {
@@ -520,45 +547,20 @@ public class ClientMain {
     }
 
     private void connectToServer(String ip, int port) {
+        String name = tfName.getText().trim();
+        if (name.isEmpty()) {
+            JOptionPane.showMessageDialog(frame, "Please enter your name!", "Error", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        int operation = Math.max(0, cbOperation.getSelectedIndex());
+        myOp = OPERATIONS[operation];
         try {
-            Socket s = new Socket(ip, port);
-            out = new ObjectOutputStream(s.getOutputStream());
-            in = new ObjectInputStream(s.getInputStream());
-
-            String name = tfName.getText().trim();
-            if (name.isEmpty()) {
-                JOptionPane.showMessageDialog(frame, "Please enter your name!", "Error", JOptionPane.WARNING_MESSAGE);
-                s.close();
-                return;
-            }
-            
-            myOp = "+";
-            Message m = new Message(Message.Type.CONNECT).put("name", name).put("operation", myOp);
-            out.writeObject(m);
-            out.flush();
-
-            new Thread(() -> {
-                try {
-                    while (true) {
-                        Message incoming = (Message) in.readObject();
-                        handleIncoming(incoming);
-                    }
-                } catch (Exception ex) {
-                    System.err.println("Connection read error: " + ex.getMessage());
-                    SwingUtilities.invokeLater(() -> {
-                        JOptionPane.showMessageDialog(frame, "Disconnected from server", "Connection Lost", JOptionPane.ERROR_MESSAGE);
-                        btnConnect.setEnabled(true);
-                        lblStatus.setText("Disconnected from server");
-                        try { if (s != null) s.close(); } catch (IOException ignored) {}
-                        stopBackgroundMusic();
-                        stopCountdownSound();
-                    });
-                }
-            }).start();
+            openConnection(ip, port, name);
 
             btnConnect.setEnabled(false);
+            cbOperation.setEnabled(false);
             btnConnect.setText("Connected");
-            lblStatus.setText("Connected as " + name + " (Addition Mode)");
+            lblStatus.setText("Connected as " + name + " (" + OPERATION_NAMES[operation] + " Mode)");
 
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -566,11 +568,100 @@ public class ClientMain {
         }
     }
 
+    /**
+     * Membuka koneksi, mengirim CONNECT (dengan token resume kalau balapan
+     * sebelumnya belum selesai) dan memulai thread pembaca.
+     */
+    private void openConnection(String ip, int port, String name) throws IOException {
+        Socket s = new Socket(ip, port);
+        out = new ObjectOutputStream(s.getOutputStream());
+        in = new ObjectInputStream(s.getInputStream());
+
+        binary = false;
+        lastPositionSeq = 0;
+        resyncPending = false;
+        rawOut = s.getOutputStream();
+        Message m = new Message(Message.Type.CONNECT).put("name", name).put("operation", myOp)
+                .put("codec", BinaryCodec.NAME)
+                .put("delta", true)
+                .put("heartbeat", true);
+        if (roomId > 0) {
+            m.put("roomId", roomId).put("playerId", playerId).put("token", resumeToken);
+        }
+        out.writeObject(m);
+        out.flush();
+
+        new Thread(() -> {
+            try {
+                InputStream rawIn = null;
+                while (true) {
+                    Message incoming = binary ? BinaryCodec.read(rawIn) : (Message) in.readObject();
+                    // Server baru membalas dengan "codec"; server lama mengabaikannya
+                    if (incoming.type == Message.Type.CONNECT_ACK && BinaryCodec.NAME.equals(incoming.get("codec"))) {
+                        rawIn = new BufferedInputStream(s.getInputStream());
+                        binary = true;
+                    }
+                    handleIncoming(incoming);
+                }
+            } catch (Exception ex) {
+                System.err.println("Connection read error: " + ex.getMessage());
+                try { s.close(); } catch (IOException ignored) {}
+                // Balapan belum selesai: coba kembali ke slot yang sama sebelum menyerah
+                if (roomId > 0 && reconnect(ip, port, name)) {
+                    return;
+                }
+                SwingUtilities.invokeLater(() -> {
+                    JOptionPane.showMessageDialog(frame, "Disconnected from server", "Connection Lost", JOptionPane.ERROR_MESSAGE);
+                    btnConnect.setEnabled(true);
+                    cbOperation.setEnabled(true);
+                    btnConnect.setText("Connect");
+                    lblStatus.setText("Disconnected from server");
+                    stopBackgroundMusic();
+                    stopCountdownSound();
+                });
+            }
+        }).start();
+    }
+
+    /**
+     * Connect ulang dengan backoff eksponensial (plus jitter supaya client
+     * tidak menyerbu server bersamaan) selama server masih menahan slot kita.
+     */
+    private boolean reconnect(String ip, int port, String name) {
+        long delay = RECONNECT_INITIAL_MILLIS;
+        long giveUp = System.currentTimeMillis() + RECONNECT_GIVE_UP_MILLIS;
+        for (int attempt = 1; System.currentTimeMillis() < giveUp; attempt++) {
+            int n = attempt;
+            SwingUtilities.invokeLater(() -> lblStatus.setText("Connection lost, reconnecting (attempt " + n + ")..."));
+            try {
+                Thread.sleep(delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+            } catch (InterruptedException e) {
+                return false;
+            }
+            try {
+                openConnection(ip, port, name);
+                return true;
+            } catch (IOException e) {
+                System.err.println("Reconnect attempt " + n + " failed: " + e.getMessage());
+                delay = Math.min(delay * 2, RECONNECT_MAX_MILLIS);
+            }
+        }
+        return false;
+    }
+
     private void handleIncoming(Message m) {
         switch (m.type) {
             case CONNECT_ACK:
                 playerId = (int) m.get("playerId");
-                System.out.println("Connected as player " + playerId);
+                Integer room = (Integer) m.get("roomId");
+                Long token = (Long) m.get("token");
+                roomId = room == null || token == null ? 0 : room;
+                resumeToken = token == null ? 0 : token;
+                boolean resumed = Boolean.TRUE.equals(m.get("resumed"));
+                System.out.println((resumed ? "Reconnected as player " : "Connected as player ") + playerId);
+                if (resumed) {
+                    SwingUtilities.invokeLater(() -> lblStatus.setText("Reconnected"));
+                }
                 break;
                 
             case COUNTDOWN:
@@ -610,7 +701,12 @@ public class ClientMain {
             case QUESTION:
                 int qId = (int) m.get("qId");
                 String text = (String) m.get("text");
+                Boolean lastCorrect = (Boolean) m.get("correct");
                 SwingUtilities.invokeLater(() -> {
+                    // Server baru menyertakan hasil jawaban sebelumnya di soal berikutnya
+                    if (lastCorrect != null && lastSubmittedQId != -1) {
+                        playSoundEffect(lastCorrect ? "correct" : "wrong");
+                    }
                     lblQuestion.setText(text);
                     tfAnswer.setText("");
                     tfAnswer.requestFocus();
@@ -624,13 +720,19 @@ public class ClientMain {
             case RESULT:
                 Map<Integer, Integer> posMap = (Map<Integer, Integer>) m.get("posMap");
                 Map<Integer, String> names = (Map<Integer, String>) m.get("names");
+                // "seq" hanya ada dari server yang mendukung delta: itu snapshot, bukan hasil jawaban
+                Integer snapshotSeq = (Integer) m.get("seq");
+                if (snapshotSeq != null) {
+                    lastPositionSeq = snapshotSeq;
+                    resyncPending = false;
+                }
             
                 SwingUtilities.invokeLater(() -> {
                     int newPos = posMap.getOrDefault(playerId, 0);
                     
                     System.out.println("RESULT received - Old pos: " + lastMyPosition + ", New pos: " + newPos + ", Waiting: " + waitingForResult + ", Last QID: " + lastSubmittedQId);
                     
-                    if (lastSubmittedQId == currentQuestionId && lastSubmittedQId != -1) {
+                    if (snapshotSeq == null && lastSubmittedQId == currentQuestionId && lastSubmittedQId != -1) {
                          if (newPos > lastMyPosition) {
                             System.out.println("CORRECT! Playing correct sound");
                             playSoundEffect("correct");
@@ -646,7 +748,40 @@ public class ClientMain {
                 });
                 break;
         
+            case POSITIONS:
+                int seq = (int) m.get("seq");
+                if (seq <= lastPositionSeq) {
+                    break;
+                }
+                if (seq != lastPositionSeq + 1 || resyncPending) {
+                    // Ada delta yang terlewat: minta snapshot penuh sekali, abaikan delta sampai snapshot datang
+                    if (!resyncPending) {
+                        System.out.println("Position seq gap: expected " + (lastPositionSeq + 1) + ", got " + seq);
+                        resyncPending = true;
+                        try {
+                            sendMessage(new Message(Message.Type.RESYNC));
+                        } catch (IOException ex) {
+                            System.err.println("Error requesting resync: " + ex.getMessage());
+                        }
+                    }
+                    break;
+                }
+                lastPositionSeq = seq;
+                int[] ids = (int[]) m.get("ids");
+                int[] pos = (int[]) m.get("pos");
+                Map<Integer, String> joined = new HashMap<>();
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) m.get("joined")).entrySet()) {
+                    joined.put((Integer) e.getKey(), (String) e.getValue());
+                }
+                int[] left = (int[]) m.get("left");
+                SwingUtilities.invokeLater(() -> {
+                    carPanel.updateState(ids, pos, joined, left);
+                    lastMyPosition = carPanel.getMyPosition(playerId);
+                });
+                break;
+
             case GAME_OVER:
+                roomId = 0;
                 String winnerName = (String) m.get("winnerName");
                 Map<Integer, Integer> finalPosMap = (Map<Integer, Integer>) m.get("posMap");
                 Map<Integer, String> finalNames = (Map<Integer, String>) m.get("names");
@@ -674,6 +809,7 @@ public class ClientMain {
                                 "Race Complete!",
                                 JOptionPane.INFORMATION_MESSAGE);
                         btnConnect.setEnabled(true);
+                        cbOperation.setEnabled(true);
                         btnConnect.setText("Connect");
                         startBackgroundMusic(); 
                     });
@@ -688,6 +824,25 @@ public class ClientMain {
                     JOptionPane.showMessageDialog(frame, "Server error: " + msg, "Error", JOptionPane.ERROR_MESSAGE)
                 );
                 break;
+
+            case PING:
+                // Heartbeat dari server: kirim balik apa adanya supaya tidak dianggap mati
+                try {
+                    sendMessage(m);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                break;
+        }
+    }
+
+    private synchronized void sendMessage(Message m) throws IOException {
+        if (binary) {
+            rawOut.write(BinaryCodec.encode(m));
+            rawOut.flush();
+        } else {
+            out.writeObject(m);
+            out.flush();
         }
     }
 
@@ -716,8 +871,7 @@ public class ClientMain {
                     .put("qId", currentQuestionId) 
                     .put("answer", a);
     
-            out.writeObject(m);
-            out.flush();
+            sendMessage(m);
     
             tfAnswer.setText("");
             lblStatus.setText("Answer submitted! Waiting for result...");
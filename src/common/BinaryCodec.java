@@ -0,0 +1,432 @@
+package common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Protokol biner ringkas sebagai pengganti Java serialization untuk Message.
+ *
+ * Setiap frame: panjang body (varint), lalu satu byte tipe (ordinal Message.Type),
+ * lalu field dengan layout tetap per tipe. Angka memakai varint, jawaban memakai
+ * zigzag supaya nilai negatif tetap kecil, dan posMap/names dikirim sebagai
+ * pasangan (id, nilai) berurutan, bukan HashMap.
+ *
+ * Dipakai hanya kalau client meminta lewat key "codec" di CONNECT; client lama
+ * tetap memakai ObjectOutputStream.
+ */
+public final class BinaryCodec {
+    /** Nilai key "codec" di CONNECT/CONNECT_ACK. */
+    public static final String NAME = "bin1";
+    public static final int MAX_FRAME = 1 << 20;
+
+    private static final Message.Type[] TYPES = Message.Type.values();
+
+    private BinaryCodec() {
+    }
+
+    /** True kalau CONNECT ini meminta protokol biner. */
+    public static boolean requested(Message connect) {
+        return NAME.equals(connect.get("codec"));
+    }
+
+    // ===== Encode =====
+
+    /** Meng-encode satu Message menjadi frame lengkap, termasuk prefix panjang. */
+    public static byte[] encode(Message m) {
+        Writer body = new Writer(32);
+        body.u1(m.type.ordinal());
+        switch (m.type) {
+            case CONNECT:
+                body.string((String) m.get("name"));
+                body.string((String) m.get("operation"));
+                break;
+            case CONNECT_ACK:
+                body.varint(intValue(m, "playerId"));
+                break;
+            case COUNTDOWN:
+                body.varint(intValue(m, "seconds"));
+                body.varint(intValue(m, "playerCount"));
+                break;
+            case START:
+                body.varint(intValue(m, "playerCount"));
+                break;
+            case QUESTION: {
+                body.varint(intValue(m, "qId"));
+                byte[] text = m.getUtf8("text");
+                if (text != null) {
+                    body.utf8(text);
+                } else {
+                    body.string((String) m.get("text"));
+                }
+                Boolean correct = (Boolean) m.get("correct");
+                body.u1(correct == null ? 0 : correct ? 1 : 2);
+                break;
+            }
+            case ANSWER:
+                body.varint(intValue(m, "qId"));
+                body.zigzag(intValue(m, "answer"));
+                break;
+            case RESULT:
+                positions(body, m);
+                body.varint(intValue(m, "seq"));
+                break;
+            case GAME_OVER:
+                body.varint(intValue(m, "winnerId"));
+                body.string((String) m.get("winnerName"));
+                positions(body, m);
+                break;
+            case ERROR:
+                body.string((String) m.get("msg"));
+                break;
+            case PING:
+                // Nomor urut heartbeat; PING tanpa "t" tetap kosong seperti dulu
+                if (m.get("t") != null) body.varint(intValue(m, "t"));
+                break;
+            case RESYNC:
+                break;
+            case POSITIONS:
+                delta(body, m);
+                break;
+            default:
+                throw new IllegalArgumentException("No binary layout for " + m.type);
+        }
+
+        Writer frame = new Writer(body.pos + 5);
+        frame.varint(body.pos);
+        frame.bytes(body.buf, 0, body.pos);
+        return frame.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void positions(Writer w, Message m) {
+        Map<Integer, Integer> posMap = (Map<Integer, Integer>) m.get("posMap");
+        Map<Integer, String> names = (Map<Integer, String>) m.get("names");
+        if (posMap == null) posMap = new HashMap<>();
+        if (names == null) names = new HashMap<>();
+
+        w.varint(posMap.size());
+        for (Map.Entry<Integer, Integer> e : posMap.entrySet()) {
+            w.varint(e.getKey());
+            w.varint(e.getValue());
+        }
+        w.varint(names.size());
+        for (Map.Entry<Integer, String> e : names.entrySet()) {
+            w.varint(e.getKey());
+            w.string(e.getValue());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void delta(Writer w, Message m) {
+        int[] ids = (int[]) m.get("ids");
+        int[] pos = (int[]) m.get("pos");
+        int[] left = (int[]) m.get("left");
+        Map<Integer, String> joined = (Map<Integer, String>) m.get("joined");
+
+        w.varint(intValue(m, "seq"));
+        w.varint(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            w.varint(ids[i]);
+            w.varint(pos[i]);
+        }
+        w.varint(joined == null ? 0 : joined.size());
+        if (joined != null) {
+            for (Map.Entry<Integer, String> e : joined.entrySet()) {
+                w.varint(e.getKey());
+                w.string(e.getValue());
+            }
+        }
+        w.varint(left == null ? 0 : left.length);
+        if (left != null) {
+            for (int id : left) w.varint(id);
+        }
+    }
+
+    private static int intValue(Message m, String key) {
+        Object v = m.get(key);
+        return v == null ? 0 : (Integer) v;
+    }
+
+    // ===== Decode =====
+
+    /**
+     * Posisi akhir (exclusive) frame lengkap yang dimulai di buf.position(),
+     * atau -1 kalau frame-nya belum lengkap. Dipakai oleh server NIO.
+     */
+    public static int frameEnd(ByteBuffer buf) throws StreamCorruptedException {
+        int pos = buf.position();
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (pos >= buf.limit()) return -1;
+            if (shift > 28) throw new StreamCorruptedException("Bad frame length");
+            int b = buf.get(pos++);
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) break;
+        }
+        if (length < 1 || length > MAX_FRAME) {
+            throw new StreamCorruptedException("Bad frame length " + length);
+        }
+        return buf.limit() - pos < length ? -1 : pos + length;
+    }
+
+    /** Decode frame lengkap dari buffer (mulai di position, termasuk prefix). */
+    public static Message decode(ByteBuffer buf) throws StreamCorruptedException {
+        int length = readVarint(buf);
+        Reader r = new Reader(buf, buf.position() + length);
+        Message m = decodeBody(r);
+        buf.position(r.end);
+        return m;
+    }
+
+    /** Baca satu frame secara blocking dari stream (client dan ClientHandler). */
+    public static Message read(InputStream in) throws IOException {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new EOFException();
+            if (shift > 28) throw new StreamCorruptedException("Bad frame length");
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) break;
+        }
+        if (length < 1 || length > MAX_FRAME) {
+            throw new StreamCorruptedException("Bad frame length " + length);
+        }
+        byte[] body = new byte[length];
+        int off = 0;
+        while (off < length) {
+            int n = in.read(body, off, length - off);
+            if (n < 0) throw new EOFException();
+            off += n;
+        }
+        return decodeBody(new Reader(ByteBuffer.wrap(body), length));
+    }
+
+    private static Message decodeBody(Reader r) throws StreamCorruptedException {
+        int typeIndex = r.u1();
+        if (typeIndex >= TYPES.length) {
+            throw new StreamCorruptedException("Unknown message type " + typeIndex);
+        }
+        Message m = new Message(TYPES[typeIndex]);
+        switch (m.type) {
+            case CONNECT:
+                m.put("name", r.string());
+                m.put("operation", r.string());
+                break;
+            case CONNECT_ACK:
+                m.put("playerId", r.varint());
+                break;
+            case COUNTDOWN:
+                m.put("seconds", r.varint());
+                m.put("playerCount", r.varint());
+                break;
+            case START:
+                m.put("playerCount", r.varint());
+                break;
+            case QUESTION: {
+                m.put("qId", r.varint());
+                m.put("text", r.string());
+                int correct = r.u1();
+                if (correct != 0) m.put("correct", correct == 1);
+                break;
+            }
+            case ANSWER:
+                m.put("qId", r.varint());
+                m.put("answer", r.zigzag());
+                break;
+            case RESULT:
+                positions(r, m);
+                m.put("seq", r.varint());
+                break;
+            case GAME_OVER:
+                m.put("winnerId", r.varint());
+                m.put("winnerName", r.string());
+                positions(r, m);
+                break;
+            case ERROR:
+                m.put("msg", r.string());
+                break;
+            case PING:
+                if (r.buf.position() < r.end) m.put("t", r.varint());
+                break;
+            case RESYNC:
+                break;
+            case POSITIONS:
+                delta(r, m);
+                break;
+            default:
+                throw new StreamCorruptedException("No binary layout for " + m.type);
+        }
+        return m;
+    }
+
+    private static void positions(Reader r, Message m) throws StreamCorruptedException {
+        int count = r.varint();
+        Map<Integer, Integer> posMap = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            int id = r.varint();
+            posMap.put(id, r.varint());
+        }
+        count = r.varint();
+        Map<Integer, String> names = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            int id = r.varint();
+            names.put(id, r.string());
+        }
+        m.put("posMap", posMap);
+        m.put("names", names);
+    }
+
+    private static void delta(Reader r, Message m) throws StreamCorruptedException {
+        m.put("seq", r.varint());
+        int count = r.varint();
+        int[] ids = new int[count];
+        int[] pos = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = r.varint();
+            pos[i] = r.varint();
+        }
+        count = r.varint();
+        Map<Integer, String> joined = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            int id = r.varint();
+            joined.put(id, r.string());
+        }
+        int[] left = new int[r.varint()];
+        for (int i = 0; i < left.length; i++) {
+            left[i] = r.varint();
+        }
+        m.put("ids", ids);
+        m.put("pos", pos);
+        m.put("joined", joined);
+        m.put("left", left);
+    }
+
+    private static int readVarint(ByteBuffer buf) throws StreamCorruptedException {
+        int value = 0;
+        for (int shift = 0; shift <= 28; shift += 7) {
+            if (!buf.hasRemaining()) throw new StreamCorruptedException("Truncated varint");
+            int b = buf.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new StreamCorruptedException("Varint too long");
+    }
+
+    // ===== Helpers =====
+
+    private static final class Writer {
+        byte[] buf;
+        int pos;
+
+        Writer(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void ensure(int n) {
+            if (pos + n > buf.length) {
+                byte[] bigger = new byte[Math.max(buf.length * 2, pos + n)];
+                System.arraycopy(buf, 0, bigger, 0, pos);
+                buf = bigger;
+            }
+        }
+
+        void u1(int v) {
+            ensure(1);
+            buf[pos++] = (byte) v;
+        }
+
+        void varint(int v) {
+            ensure(5);
+            while ((v & ~0x7F) != 0) {
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+
+        void zigzag(int v) {
+            varint((v << 1) ^ (v >> 31));
+        }
+
+        void bytes(byte[] b, int off, int len) {
+            ensure(len);
+            System.arraycopy(b, off, buf, pos, len);
+            pos += len;
+        }
+
+        /** null dikodekan sebagai 0, string lain sebagai (panjang + 1) lalu UTF-8. */
+        void string(String s) {
+            if (s == null) {
+                varint(0);
+                return;
+            }
+            utf8(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /** String yang sudah di-encode; format sama dengan string(). */
+        void utf8(byte[] b) {
+            varint(b.length + 1);
+            bytes(b, 0, b.length);
+        }
+
+        byte[] toByteArray() {
+            if (pos == buf.length) return buf;
+            byte[] out = new byte[pos];
+            System.arraycopy(buf, 0, out, 0, pos);
+            return out;
+        }
+    }
+
+    private static final class Reader {
+        final ByteBuffer buf;
+        final int end;
+
+        Reader(ByteBuffer buf, int end) {
+            this.buf = buf;
+            this.end = end;
+        }
+
+        int u1() throws StreamCorruptedException {
+            if (buf.position() >= end) throw new StreamCorruptedException("Truncated frame");
+            return buf.get() & 0xFF;
+        }
+
+        int varint() throws StreamCorruptedException {
+            int value = 0;
+            for (int shift = 0; shift <= 28; shift += 7) {
+                int b = u1();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new StreamCorruptedException("Varint too long");
+        }
+
+        int zigzag() throws StreamCorruptedException {
+            int v = varint();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        String string() throws StreamCorruptedException {
+            int len = varint();
+            if (len == 0) return null;
+            len--;
+            if (len > end - buf.position()) throw new StreamCorruptedException("Truncated string");
+            String s;
+            if (buf.hasArray()) {
+                s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+                buf.position(buf.position() + len);
+            } else {
+                byte[] b = new byte[len];
+                buf.get(b);
+                s = new String(b, StandardCharsets.UTF_8);
+            }
+            return s;
+        }
+    }
+}
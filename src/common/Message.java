@@ -7,6 +7,7 @@ import java.util.Map;
 public class Message implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    // Tipe baru harus ditambahkan di akhir: BinaryCodec memakai ordinal sebagai kode tipe
     public enum Type {
         CONNECT,
         CONNECT_ACK,
@@ -17,17 +18,25 @@ public class Message implements Serializable {
         RESULT,
         GAME_OVER,
         ERROR,
-        PING           // For keep-alive messages
+        PING,          // For keep-alive messages
+        POSITIONS,     // Delta posisi (seq, ids, pos, joined, left) untuk client yang minta "delta"
+        RESYNC         // Client minta snapshot penuh karena ada seq yang hilang
     }
 
     public Type type;
     private Map<String, Object> data = new HashMap<>();
+    // Bentuk UTF-8 yang sudah di-render sebelumnya; hanya dibaca BinaryCodec, tidak ikut diserialisasi
+    private transient Map<String, byte[]> utf8;
+    // Pesan broadcast: isinya dibekukan dan frame hasil encode di-cache per codec
+    private transient boolean shared;
+    private transient volatile byte[][] frames;
 
     public Message(Type type) {
         this.type = type;
     }
 
     public Message put(String key, Object value) {
+        checkNotShared();
         data.put(key, value);
         return this;
     }
@@ -35,4 +44,50 @@ public class Message implements Serializable {
     public Object get(String key) {
         return data.get(key);
     }
+
+    /** Sama seperti put, ditambah bytes UTF-8 dari value yang sudah disiapkan pemanggil. */
+    public Message putText(String key, String value, byte[] valueUtf8) {
+        checkNotShared();
+        data.put(key, value);
+        if (utf8 == null) utf8 = new HashMap<>(2);
+        utf8.put(key, valueUtf8);
+        return this;
+    }
+
+    public byte[] getUtf8(String key) {
+        return utf8 == null ? null : utf8.get(key);
+    }
+
+    /**
+     * Menandai pesan yang dikirim ke banyak client. Setelah ini isinya tidak
+     * boleh diubah, sehingga server cukup meng-encode-nya sekali per codec.
+     */
+    public Message shared() {
+        shared = true;
+        return this;
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    /** Frame yang sudah di-encode untuk codec ke-{@code codec}, atau null. */
+    public byte[] cachedFrame(int codec) {
+        byte[][] f = frames;
+        return f == null || codec >= f.length ? null : f[codec];
+    }
+
+    /** Boleh dipanggil bersamaan dari beberapa writer; encoding yang sama menang siapa saja. */
+    public void cacheFrame(int codec, byte[] frame) {
+        if (!shared) return;
+        byte[][] f = frames;
+        byte[][] next = new byte[Math.max(codec + 1, f == null ? 0 : f.length)][];
+        if (f != null) System.arraycopy(f, 0, next, 0, f.length);
+        next[codec] = frame;
+        frames = next;
+    }
+
+    private void checkNotShared() {
+        if (shared) throw new IllegalStateException("Shared message is read-only");
+    }
 }
\ No newline at end of file
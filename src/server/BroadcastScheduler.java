@@ -0,0 +1,75 @@
+package server;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Menggabungkan semua perubahan posisi dalam satu periode menjadi satu
+ * broadcast. Jalur jawaban cukup memanggil markDirty(); perubahan pertama
+ * menjadwalkan flush satu periode kemudian (default 20 Hz) di TimerWheel,
+ * dan perubahan berikutnya ikut terbawa di flush yang sama. Room yang sepi
+ * tidak memakan tick sama sekali. Dengan rate 0, markDirty() langsung
+ * broadcast seperti perilaku lama. Dengan rate BATCHED, markDirty() hanya
+ * menandai dan GameLoop memanggil flushPending() di akhir setiap batch.
+ */
+public class BroadcastScheduler {
+    /** Rate khusus untuk --engine=loop: broadcast sekali per batch GameLoop. */
+    static final int BATCHED = -1;
+
+    private final Runnable flush;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final TimerWheel timers;
+    private final Executor executor;
+    private final Runnable tick = this::tick;
+    private final long periodMicros;
+    private final boolean batched;
+
+    /** Flush berjalan di executor; periode dibulatkan ke tick TimerWheel. */
+    BroadcastScheduler(Runnable flush, int ratePerSecond, TimerWheel timers, Executor executor) {
+        this.flush = flush;
+        this.timers = ratePerSecond > 0 ? timers : null;
+        this.executor = executor;
+        this.periodMicros = ratePerSecond > 0 ? 1_000_000L / ratePerSecond : 0;
+        this.batched = ratePerSecond == BATCHED;
+    }
+
+    public void markDirty() {
+        if (batched) {
+            dirty.set(true);
+        } else if (timers == null) {
+            flush.run();
+        } else if (dirty.compareAndSet(false, true)) {
+            timers.schedule(tick, periodMicros, TimeUnit.MICROSECONDS, executor);
+        }
+    }
+
+    /** Dipanggil sebelum pesan yang harus langsung terkirim (GAME_OVER). */
+    public void cancelPending() {
+        dirty.set(false);
+    }
+
+    /** Broadcast sekarang kalau ada perubahan yang belum terkirim. */
+    void flushPending() {
+        tick();
+    }
+
+    /**
+     * Untuk perubahan di luar GameLoop (sweep batas waktu): di mode BATCHED
+     * tidak ada akhir batch yang akan mem-flush, jadi flush sekarang. Mode
+     * lain sudah terjadwal lewat markDirty().
+     */
+    void flushIfBatched() {
+        if (batched) tick();
+    }
+
+    private void tick() {
+        if (dirty.getAndSet(false)) {
+            try {
+                flush.run();
+            } catch (RuntimeException e) {
+                Log.error("Broadcast flush failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package server;
+
+import common.Message;
+
+/**
+ * Satu koneksi pemain, apa pun transport-nya (thread per client atau NIO).
+ * ServerMain hanya bicara lewat kelas ini supaya logika game tidak peduli
+ * bagaimana byte sampai ke socket.
+ */
+public abstract class Connection {
+    public int playerId;
+    /** Client meminta POSITIONS delta ("delta" di CONNECT) alih-alih RESULT penuh. */
+    public boolean deltaPositions;
+    /** Client delta yang belum punya snapshot (baru join, reset, atau minta RESYNC). */
+    volatile boolean needsSnapshot;
+    /** Room tempat pemain ini bermain; null sebelum CONNECT atau setelah room di-reset. */
+    volatile GameRoom room;
+    /** CONNECT ini mengambil alih slot lama lewat token resume (lihat GameRoom.tryReattach). */
+    boolean resumed;
+
+    // State heartbeat (lihat Heartbeat); ditulis thread reaper dan thread pembaca koneksi
+    volatile TimerWheel.Timeout heartbeatTimer;
+    /** Diset stop() atau saat eviction; setelah itu tidak ada PING yang dijadwalkan lagi. */
+    volatile boolean heartbeatStopped;
+    volatile int pingSeq;
+    volatile long pingSentNanos;
+    volatile int missedPings;
+    /** RTT PING terakhir yang dibalas; 0 kalau belum ada. */
+    volatile long rttNanos;
+
+    public abstract void send(Message msg);
+
+    public abstract void close();
+}
@@ -0,0 +1,81 @@
+package server;
+
+/**
+ * Kesulitan adaptif per pemain (--difficulty=adaptive). Setiap jawaban
+ * memperbarui EWMA akurasi dan EWMA waktu jawab (alpha 1/8, kira-kira delapan
+ * jawaban terakhir); pemain yang konsisten benar dan cepat naik ke tingkat
+ * QuestionPool berikutnya, yang sering salah atau lambat turun. Dengan begitu
+ * pemain kuat dan pemula di room yang sama tetap bersaing ketat.
+ *
+ * Seluruh state satu pemain dikemas dalam satu long di PlayerTable:
+ *   bit 0-7 tingkat, bit 8-15 jawaban sejak tingkat berubah,
+ *   bit 16-31 EWMA akurasi (0..ONE), bit 32-63 EWMA waktu jawab (ms).
+ * update() hanya aritmetika integer: O(1) dan tanpa alokasi.
+ */
+final class Difficulty {
+    static final int ONE = 0xFFFF;
+    private static final int SHIFT = 3;
+    // Akurasi awal (dan setelah pindah tingkat): netral, tidak langsung naik/turun
+    private static final int NEUTRAL = ONE * 3 / 4;
+    private static final int PROMOTE_ACCURACY = ONE * 85 / 100;
+    private static final int DEMOTE_ACCURACY = ONE * 55 / 100;
+    private static final long FAST_MILLIS = 3_000;
+    private static final long SLOW_MILLIS = 8_000;
+    private static final long MAX_SAMPLE_MILLIS = 600_000;
+    // Jawaban minimal di satu tingkat sebelum boleh pindah lagi
+    private static final int MIN_ANSWERS = 5;
+
+    /** State pemain baru: tingkat NORMAL, seperti balapan tanpa kesulitan adaptif. */
+    static final long INITIAL = pack(QuestionPool.NORMAL, 0, NEUTRAL, 0);
+
+    private Difficulty() {
+    }
+
+    static long pack(int level, int answers, int accuracy, long latencyMillis) {
+        return (latencyMillis << 32) | ((long) accuracy << 16) | (answers << 8) | level;
+    }
+
+    static int level(long state) {
+        return (int) (state & 0xFF);
+    }
+
+    static int answers(long state) {
+        return (int) ((state >>> 8) & 0xFF);
+    }
+
+    static int accuracy(long state) {
+        return (int) ((state >>> 16) & 0xFFFF);
+    }
+
+    static long latencyMillis(long state) {
+        return state >>> 32;
+    }
+
+    /**
+     * State baru setelah satu jawaban.
+     *
+     * @param latencyMillis waktu sejak soal dikirim; negatif kalau tidak diketahui
+     */
+    static long update(long state, boolean correct, long latencyMillis) {
+        int level = level(state);
+        int answers = Math.min(answers(state) + 1, 0xFF);
+        int accuracy = accuracy(state);
+        accuracy += ((correct ? ONE : 0) - accuracy) >> SHIFT;
+        long latency = latencyMillis(state);
+        if (latencyMillis >= 0) {
+            long sample = Math.min(latencyMillis, MAX_SAMPLE_MILLIS);
+            latency = latency == 0 ? sample : latency + ((sample - latency) >> SHIFT);
+        }
+
+        if (answers >= MIN_ANSWERS) {
+            if (accuracy >= PROMOTE_ACCURACY && latency <= FAST_MILLIS
+                    && level < QuestionPool.difficultyLevels() - 1) {
+                return pack(level + 1, 0, NEUTRAL, latency);
+            }
+            if ((accuracy < DEMOTE_ACCURACY || latency > SLOW_MILLIS) && level > 0) {
+                return pack(level - 1, 0, NEUTRAL, latency);
+            }
+        }
+        return pack(level, answers, accuracy, latency);
+    }
+}
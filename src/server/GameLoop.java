@@ -0,0 +1,148 @@
+package server;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Engine alternatif (--engine=loop): thread koneksi hanya men-decode ANSWER
+ * dan menaruhnya di ring buffer MPSC; satu thread game loop mengambilnya
+ * dalam batch dan menerapkannya satu per satu. Setelah satu batch selesai,
+ * setiap room yang tersentuh mem-broadcast posisinya sekali (smart batching:
+ * saat sepi satu jawaban = satu batch, saat ramai ratusan jawaban berbagi
+ * satu broadcast).
+ *
+ * Ring-nya array slot yang dialokasikan sekali (bounded queue Vyukov, seperti
+ * Log). Kalau penuh, produsen menunggu giliran; jawaban tidak pernah dibuang.
+ */
+final class GameLoop {
+    private static final Metrics.Histogram BATCH_SIZE = Metrics.histogram("game_loop_batch_size");
+    private static final Metrics.Histogram QUEUE_NANOS = Metrics.histogram("game_loop_queue_nanos");
+
+    private final int mask;
+    private final Slot[] slots;
+    private final int maxBatch;
+    private final AtomicLong tail = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean sleeping = false;
+    // Hanya disentuh thread game loop
+    private long head = 0;
+    private int batch = 0;
+    private GameRoom[] touched = new GameRoom[16];
+
+    private static final class Slot {
+        volatile long seq;
+        Connection connection;
+        int qId;
+        int answer;
+        long published;
+
+        Slot(long seq) {
+            this.seq = seq;
+        }
+    }
+
+    /**
+     * @param capacity jumlah jawaban yang bisa antre, dibulatkan ke pangkat dua
+     * @param maxBatch jawaban maksimal per batch sebelum broadcast
+     */
+    GameLoop(int capacity, int maxBatch) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot(i);
+        }
+        this.maxBatch = Math.max(1, maxBatch);
+        thread = new Thread(this::run, "game-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Dipanggil thread koneksi mana pun; menunggu kalau ring penuh. */
+    void publish(Connection connection, int qId, int answer) {
+        long pos = tail.get();
+        while (true) {
+            Slot s = slots[(int) (pos & mask)];
+            long diff = s.seq - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) break;
+                pos = tail.get();
+            } else if (diff < 0) {
+                // Penuh: beri game loop kesempatan menguras
+                Thread.yield();
+                pos = tail.get();
+            } else {
+                pos = tail.get();
+            }
+        }
+        Slot s = slots[(int) (pos & mask)];
+        s.connection = connection;
+        s.qId = qId;
+        s.answer = answer;
+        s.published = System.nanoTime();
+        s.seq = pos + 1;
+        if (sleeping) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                if (drainBatch() == 0) {
+                    sleeping = true;
+                    // Cek ulang setelah mengumumkan tidur, supaya publish yang baru masuk tidak terlewat
+                    if (!ready()) {
+                        LockSupport.park(this);
+                    }
+                    sleeping = false;
+                }
+            } catch (RuntimeException e) {
+                Log.error("Game loop batch failed", e);
+            }
+        }
+    }
+
+    private boolean ready() {
+        return slots[(int) (head & mask)].seq == head + 1;
+    }
+
+    private int drainBatch() {
+        batch++;
+        int count = 0;
+        int rooms = 0;
+        while (count < maxBatch) {
+            Slot s = slots[(int) (head & mask)];
+            if (s.seq != head + 1) break;
+            Connection connection = s.connection;
+            int qId = s.qId;
+            int answer = s.answer;
+            long published = s.published;
+            s.connection = null;
+            s.seq = head + slots.length;
+            head++;
+            count++;
+
+            GameRoom room = connection.room;
+            if (room == null) continue;
+            long start = System.nanoTime();
+            QUEUE_NANOS.record(start - published);
+            room.processAnswer(connection.playerId, qId, answer);
+            Metrics.ANSWER_NANOS.record(System.nanoTime() - start);
+            if (room.loopBatch != batch) {
+                room.loopBatch = batch;
+                if (rooms == touched.length) {
+                    touched = Arrays.copyOf(touched, rooms * 2);
+                }
+                touched[rooms++] = room;
+            }
+        }
+        for (int i = 0; i < rooms; i++) {
+            touched[i].flushBatch();
+            touched[i] = null;
+        }
+        if (count > 0) BATCH_SIZE.record(count);
+        return count;
+    }
+}
@@ -30,7 +30,7 @@ public class GameManager {
 
     private void startGame() {
         started = true;
-        System.out.println("Game starting!");
+        Log.info("Game starting!");
         broadcast(new Message(Message.Type.START));
         // kirim pertanyaan pertama ke setiap pemain
         players.forEach((id, p) -> sendQuestionToPlayer(id));
@@ -51,14 +51,14 @@ public class GameManager {
         Q q = lastQuestion.get(playerId);
         if (q == null || q.id != qId) {
             // out-of-sync question, ignore
-            System.out.println("Player " + playerId + " answered unknown qId");
+            Log.debug("Player {} answered unknown qId", playerId);
             players.get(playerId).send(new Message(Message.Type.ERROR).put("msg", "Question mismatch"));
             return;
         }
         if (q.answer == answer) {
             // benar: maju
             position.put(playerId, position.getOrDefault(playerId,0) + 1);
-            System.out.println("Player " + playerId + " correct! pos=" + position.get(playerId));
+            Log.debug("Player {} correct! pos={}", playerId, position.get(playerId));
             broadcastStatus();
             if (position.get(playerId) >= FINISH) {
                 broadcast(new Message(Message.Type.GAME_OVER).put("winnerId", playerId));
@@ -68,7 +68,7 @@ public class GameManager {
             }
         } else {
             // salah -> tidak maju
-            System.out.println("Player " + playerId + " incorrect. given=" + answer + " expect=" + q.answer);
+            Log.debug("Player {} incorrect. given={} expect={}", playerId, answer, q.answer);
         }
         // kirim soal baru untuk pemain itu
         sendQuestionToPlayer(playerId);
@@ -0,0 +1,705 @@
+package server;
+
+import common.Message;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Satu balapan: pemain, posisi, soal yang sedang aktif, countdown dan reset.
+ * Semua state ini dulu ada langsung di ServerMain; sekarang setiap room punya
+ * lock sendiri sehingga room yang berbeda tidak saling menunggu. Timer room
+ * (countdown, jeda sebelum soal pertama, reset) dijadwalkan di TimerWheel
+ * bersama dan dijalankan di thread shard-nya, bukan satu Timer/thread per
+ * countdown.
+ *
+ * Jalur jawaban (processAnswer) tidak memakai lock room dan tidak
+ * mengalokasikan objek untuk state: semuanya ada di PlayerTable dan diubah
+ * dengan CAS. Lock room hanya untuk join/leave, countdown, broadcast dan
+ * game over.
+ */
+public class GameRoom {
+    static final int MIN_PLAYERS = 2;
+    private static final int COUNTDOWN_SECONDS = 10;
+    private static final int FINISH_LINE = 100;
+    private static final int STEP = 10;
+    // Seberapa sering batas waktu soal diperiksa; soal kedaluwarsa paling lambat selama ini setelah batasnya
+    private static final long DEADLINE_SWEEP_MILLIS = 200;
+    private static final Metrics.Counter RESUMES = Metrics.counter("resume_total");
+    private static final Metrics.Counter RESUME_EXPIRED = Metrics.counter("resume_expired_total");
+    private static final Metrics.Counter LEVEL_CHANGES = Metrics.counter("difficulty_changes_total");
+
+    /** Fase room untuk Snapshot (lihat phase()). */
+    static final int WAITING = 0;
+    static final int COUNTDOWN = 1;
+    static final int RACING = 2;
+    static final int FINISHED = 3;
+
+    public final int id;
+    private final int maxPlayers;
+    private final TimerWheel timers;
+    private final Executor executor;
+    private final QuestionPool questions;
+    private final long questionNanos;
+    private final int timeoutPenalty;
+    private final long resumeMillis;
+    private final boolean adaptiveDifficulty;
+
+    private List<Connection> clients = new CopyOnWriteArrayList<>();
+    final PlayerTable players;
+
+    // Perubahan sejak broadcast terakhir, untuk client POSITIONS (delta).
+    // Perubahan posisi ditandai sebagai dirty di PlayerTable.
+    private int positionSeq = 0;
+    private final Map<Integer, String> joinedNames = new LinkedHashMap<>();
+    private final Set<Integer> leftPlayers = new LinkedHashSet<>();
+
+    private volatile boolean countdownStarted = false;
+    private volatile boolean gameStarted = false;
+    private volatile boolean gameOver = false;
+    /** Id balapan di Journal; diberikan saat pemain pertama masuk, 0 setelah reset. */
+    private volatile long gameId;
+    /** Latch pemenang: 0 = belum ada; hanya CAS pertama yang menang. */
+    private final AtomicInteger winnerId = new AtomicInteger();
+    private final BroadcastScheduler broadcaster;
+    private volatile TimerWheel.Timeout deadlineSweep;
+    /** Tick countdown atau jeda soal pertama yang sedang menunggu; dibatalkan saat reset. */
+    private volatile TimerWheel.Timeout countdownTimer;
+    /** Pemain yang client-nya belum connect lagi (slot DETACHED di PlayerTable). */
+    private int detached;
+    /** Timer kedaluwarsa slot DETACHED per playerId; di bawah lock room. */
+    private final TimerWheel.Timeout[] resumeTimers;
+    /** Nomor batch GameLoop terakhir yang menyentuh room ini; hanya dipakai thread game loop. */
+    int loopBatch;
+
+    /**
+     * @param timers          wheel bersama untuk semua timer room
+     * @param executor        thread shard tempat task timer room dijalankan
+     * @param questionMillis  batas waktu menjawab satu soal; 0 = tanpa batas
+     * @param timeoutPenalty  langkah mundur kalau soal kedaluwarsa
+     * @param resumeMillis    berapa lama slot pemain yang putus ditahan untuk reattach; 0 = langsung keluar
+     * @param adaptiveDifficulty true = tingkat soal per pemain mengikuti Difficulty; false = selalu NORMAL
+     */
+    GameRoom(int id, int maxPlayers, TimerWheel timers, Executor executor, int broadcastHz, QuestionPool questions,
+             long questionMillis, int timeoutPenalty, long resumeMillis, boolean adaptiveDifficulty) {
+        this.id = id;
+        this.maxPlayers = maxPlayers;
+        this.timers = timers;
+        this.executor = executor;
+        this.questions = questions;
+        this.questionNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, questionMillis));
+        this.timeoutPenalty = Math.max(0, timeoutPenalty);
+        this.resumeMillis = Math.max(0, resumeMillis);
+        this.adaptiveDifficulty = adaptiveDifficulty;
+        this.resumeTimers = new TimerWheel.Timeout[maxPlayers + 1];
+        this.players = new PlayerTable(maxPlayers);
+        this.broadcaster = new BroadcastScheduler(this::broadcastPositions, broadcastHz, timers, executor);
+    }
+
+    private TimerWheel.Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return timers.schedule(task, delay, unit, executor);
+    }
+
+    /** Room menerima pemain baru selama balapan belum mulai dan belum penuh. */
+    synchronized boolean isJoinable() {
+        return !gameStarted && clients.size() + detached < maxPlayers;
+    }
+
+    /** Belum ada pemain dan tidak sedang balapan; bisa dipakai ulang oleh shard. */
+    synchronized boolean isIdle() {
+        return !countdownStarted && clients.isEmpty() && detached == 0;
+    }
+
+    /** Dibaca thread snapshot tanpa lock. */
+    int phase() {
+        if (gameOver) return FINISHED;
+        if (gameStarted) return RACING;
+        return countdownStarted ? COUNTDOWN : WAITING;
+    }
+
+    long gameId() {
+        return gameId;
+    }
+
+    /**
+     * Mendaftarkan pemain kalau room masih menerima pemain.
+     *
+     * @return playerId di room ini, atau -1 kalau room sudah mulai/penuh
+     */
+    public synchronized int tryRegister(Connection client, String name, int operation) {
+        if (!isJoinable()) return -1;
+        client.room = this;
+        return registerPlayer(client, name, operation);
+    }
+
+    private int registerPlayer(Connection client, String name, int operation) {
+        // Slot kosong terkecil; isJoinable() sudah menjamin masih ada
+        int id = players.add(name, operation, client);
+        client.playerId = id;
+        clients.add(client);
+        joinedNames.put(id, name);
+        leftPlayers.remove(id);
+        if (gameId == 0) gameId = Journal.newGameId();
+        Journal.join(gameId, this.id, id, name);
+
+        Log.info("[Room {}] Player {} registered: {} ({})", this.id, id, name, QuestionPool.OPERATIONS[operation]);
+
+        Log.debug("[Room {}] Total players: {}", this.id, clients.size());
+
+        // Broadcast current positions to ALL clients immediately
+        broadcastPositions();
+
+        // Start countdown when second player joins
+        if (clients.size() == MIN_PLAYERS && !countdownStarted) {
+            countdownStarted = true;
+            startCountdown();
+        }
+
+        return id;
+    }
+
+    /**
+     * Client yang connect lagi dengan roomId, playerId dan token resume dari
+     * CONNECT_ACK sebelumnya kembali ke slotnya (putus sementara, atau slot hasil
+     * restore Snapshot). Kalau koneksi lamanya belum terdeteksi putus (mis. TCP
+     * half-open), koneksi itu diambil alih dan ditutup. State dikirim setelah
+     * CONNECT_ACK lewat resume().
+     */
+    synchronized boolean tryReattach(Connection client, int playerId, long token) {
+        if (gameOver || token == 0 || !players.isActive(playerId) || players.token(playerId) != token) {
+            return false;
+        }
+        Connection old = players.connection(playerId);
+        if (old == PlayerTable.DETACHED) {
+            detached--;
+            TimerWheel.Timeout timer = resumeTimers[playerId];
+            if (timer != null) {
+                timer.cancel();
+                resumeTimers[playerId] = null;
+            }
+        } else {
+            clients.remove(old);
+            old.room = null;
+            old.close();
+        }
+        players.attach(playerId, client);
+        client.room = this;
+        client.playerId = playerId;
+        client.resumed = true;
+        clients.add(client);
+        RESUMES.increment();
+        Log.info("[Room {}] Player {} reattached: {}", id, playerId, players.name(playerId));
+        return true;
+    }
+
+    /**
+     * Resync ringkas untuk pemain yang baru reattach: START kalau balapan sudah
+     * berjalan, satu snapshot posisi, lalu soal baru (soal lamanya hangus
+     * karena teksnya tidak disimpan).
+     */
+    synchronized void resume(Connection client) {
+        int playerId = client.playerId;
+        if (client.room != this || players.connection(playerId) != client) return;
+        if (gameStarted) {
+            client.send(new Message(Message.Type.START).put("playerCount", clients.size()));
+        }
+        client.needsSnapshot = false;
+        client.send(buildSnapshot());
+        if (gameStarted && !gameOver) {
+            long current = players.question(playerId);
+            int qId = PlayerTable.questionId(current) + 1;
+            QuestionPool.Entry next = questions.take(players.operation(playerId), Difficulty.level(players.difficulty(playerId)));
+            players.setDeadline(playerId, nextDeadline());
+            if (players.claimQuestion(playerId, current, PlayerTable.pack(qId, next.answer))) {
+                sendQuestion(playerId, qId, next, null);
+            }
+        } else if (clients.size() >= MIN_PLAYERS && !countdownStarted) {
+            countdownStarted = true;
+            startCountdown();
+        }
+    }
+
+    private void startCountdown() {
+        Log.info("[Room {}] Starting {} second countdown...", id, COUNTDOWN_SECONDS);
+
+        scheduleCountdown(System.nanoTime(), COUNTDOWN_SECONDS);
+    }
+
+    /**
+     * Tick countdown berikutnya, dihitung dari awal countdown supaya jeda
+     * antar-tick tidak menumpuk.
+     */
+    private void scheduleCountdown(long startNanos, int seconds) {
+        long due = startNanos + TimeUnit.SECONDS.toNanos(COUNTDOWN_SECONDS - seconds + 1);
+        countdownTimer = schedule(() -> countdownTick(startNanos, seconds), due - System.nanoTime(),
+            TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized void countdownTick(long startNanos, int seconds) {
+        // Semua pemain keluar selama countdown: room sudah di-reset
+        if (!countdownStarted) return;
+        if (seconds > 0) {
+
+            Message countdownMsg = new Message(Message.Type.COUNTDOWN)
+                    .put("seconds", seconds)
+                    .put("playerCount", clients.size());
+
+            broadcast(countdownMsg);
+
+            Log.debug("[Room {}] Countdown: {}", id, seconds);
+            scheduleCountdown(startNanos, seconds - 1);
+
+        } else {
+            startGame();
+        }
+    }
+
+    private synchronized void startGame() {
+        gameStarted = true;
+        Journal.start(gameId, id, clients.size());
+
+        broadcast(new Message(Message.Type.START)
+            .put("playerCount", clients.size()));
+
+        broadcastPositions();
+
+        countdownTimer = schedule(this::sendFirstQuestions, 2, TimeUnit.SECONDS);
+    }
+
+    /** Mulai tanpa countdown dan tanpa jeda soal pertama; dipakai benchmark. */
+    synchronized void startNow() {
+        countdownStarted = true;
+        gameStarted = true;
+        sendFirstQuestions();
+    }
+
+    private synchronized void sendFirstQuestions() {
+        if (!gameStarted || gameOver) return;
+        long deadline = nextDeadline();
+        for (int playerId = 1; playerId <= players.capacity(); playerId++) {
+            if (!players.isActive(playerId)) continue;
+            QuestionPool.Entry first = questions.take(players.operation(playerId), Difficulty.level(players.difficulty(playerId)));
+            players.setDeadline(playerId, deadline);
+            if (players.claimQuestion(playerId, 0L, PlayerTable.pack(1, first.answer))) {
+                sendQuestion(playerId, 1, first, null);
+            }
+        }
+        if (questionNanos > 0) {
+            deadlineSweep = schedule(this::expireQuestions, DEADLINE_SWEEP_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private long nextDeadline() {
+        return questionNanos > 0 ? System.nanoTime() + questionNanos : 0L;
+    }
+
+    /**
+     * Satu pemeriksaan berkala per room menggantikan timer per soal: jalur
+     * jawaban cukup menulis batas waktu baru ke PlayerTable. Soal yang lewat
+     * batas diklaim dengan CAS yang sama seperti jawaban, jadi kalau pemain
+     * menjawab di saat yang sama hanya salah satunya yang menang.
+     */
+    private void expireQuestions() {
+        if (gameOver || !gameStarted) return;
+        long now = System.nanoTime();
+        for (int playerId = 1; playerId <= players.capacity() && !gameOver; playerId++) {
+            if (!players.isActive(playerId)) continue;
+            // Baca soal dulu baru batas waktunya (kebalikan urutan tulis di jalur jawaban)
+            long current = players.question(playerId);
+            long deadline = players.deadline(playerId);
+            if (current == 0L || deadline == 0L || deadline - now > 0) continue;
+
+            int qId = PlayerTable.questionId(current);
+            long state = players.difficulty(playerId);
+            if (adaptiveDifficulty) {
+                state = Difficulty.update(state, false, TimeUnit.NANOSECONDS.toMillis(questionNanos));
+            }
+            QuestionPool.Entry next = questions.take(players.operation(playerId), Difficulty.level(state));
+            players.setDeadline(playerId, now + questionNanos);
+            if (!players.claimQuestion(playerId, current, PlayerTable.pack(qId + 1, next.answer))) continue;
+            if (adaptiveDifficulty) setDifficulty(playerId, state);
+
+            Metrics.QUESTION_TIMEOUTS.increment();
+            Journal.timeout(gameId, id, playerId, qId);
+            if (StatsStore.isEnabled()) players.recordTimeout(playerId);
+            if (timeoutPenalty > 0) {
+                int newPos = players.advance(playerId, -timeoutPenalty, FINISH_LINE);
+                Journal.position(gameId, id, playerId, newPos);
+                broadcaster.markDirty();
+            }
+            Connection connection = players.connection(playerId);
+            if (connection != null && !connection.deltaPositions) {
+                sendResultToLegacyClient(connection);
+            }
+            sendQuestion(playerId, qId + 1, next, false);
+        }
+        broadcaster.flushIfBatched();
+        if (!gameOver) {
+            deadlineSweep = schedule(this::expireQuestions, DEADLINE_SWEEP_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    /**
+     * @param lastCorrect hasil jawaban sebelumnya (null untuk soal pertama). Client
+     *                    delta tidak lagi menerima RESULT untuk jawaban salah, jadi
+     *                    bunyi benar/salah diambil dari sini.
+     */
+    private void sendQuestion(int playerId, int qId, QuestionPool.Entry q, Boolean lastCorrect) {
+        Journal.question(gameId, id, playerId, qId, q.answer, q.utf8);
+        Connection connection = players.connection(playerId);
+        // Pesan untuk slot DETACHED dibuang, jadi tidak perlu dibuat
+        if (connection == null || connection == PlayerTable.DETACHED) return;
+        if (adaptiveDifficulty || StatsStore.isEnabled()) players.setAsked(playerId, System.nanoTime());
+        Message msg = new Message(Message.Type.QUESTION)
+            .put("qId", qId)
+            .putText("text", q.text, q.utf8);
+        if (lastCorrect != null) {
+            msg.put("correct", lastCorrect);
+        }
+        connection.send(msg);
+    }
+
+
+    /**
+     * Tanpa lock room. Soal yang sedang aktif diklaim dengan CAS (diganti soal
+     * berikutnya), sehingga jawaban ganda untuk qId yang sama diabaikan. Hanya
+     * keputusan pemenang yang butuh koordinasi antar pemain, lewat winnerId.
+     */
+    public void processAnswer(int playerId, int qId, int answer) {
+        if (!players.isActive(playerId)) return;
+
+        long current = players.question(playerId);
+        if (gameOver || current == 0L || PlayerTable.questionId(current) != qId) {
+            Journal.answer(gameId, id, playerId, qId, answer, Journal.STALE);
+            return;
+        }
+        boolean isCorrect = answer == PlayerTable.answer(current);
+        long now = System.nanoTime();
+        // Tingkat soal berikutnya sudah memperhitungkan jawaban ini; baru disimpan kalau klaimnya menang
+        long state = players.difficulty(playerId);
+        if (adaptiveDifficulty) {
+            long asked = players.asked(playerId);
+            state = Difficulty.update(state, isCorrect, asked == 0L ? -1 : TimeUnit.NANOSECONDS.toMillis(now - asked));
+        }
+        QuestionPool.Entry next = questions.take(players.operation(playerId), Difficulty.level(state));
+        if (questionNanos > 0) players.setDeadline(playerId, now + questionNanos);
+        if (!players.claimQuestion(playerId, current, PlayerTable.pack(qId + 1, next.answer))) {
+            Journal.answer(gameId, id, playerId, qId, answer, Journal.STALE);
+            return;
+        }
+        if (adaptiveDifficulty) setDifficulty(playerId, state);
+
+        Metrics.ANSWERS.increment();
+        if (isCorrect) Metrics.ANSWERS_CORRECT.increment();
+        Journal.answer(gameId, id, playerId, qId, answer, isCorrect ? Journal.CORRECT : Journal.WRONG);
+        if (StatsStore.isEnabled()) players.recordAnswer(playerId, isCorrect, now);
+
+        if (isCorrect) {
+            int newPos = players.advance(playerId, STEP, FINISH_LINE);
+            Journal.position(gameId, id, playerId, newPos);
+
+            if (newPos >= FINISH_LINE && winnerId.compareAndSet(0, playerId)) {
+                finishGame(playerId);
+                return;
+            }
+        }
+
+        // Pemain lain cukup melihat posisi di tick berikutnya
+        broadcaster.markDirty();
+        Connection connection = players.connection(playerId);
+        if (connection != null && !connection.deltaPositions) {
+            sendResultToLegacyClient(connection);
+        }
+
+        if (!gameOver) {
+            sendQuestion(playerId, qId + 1, next, isCorrect);
+        }
+    }
+
+    private void setDifficulty(int playerId, long state) {
+        if (Difficulty.level(state) != Difficulty.level(players.difficulty(playerId))) {
+            LEVEL_CHANGES.increment();
+        }
+        players.setDifficulty(playerId, state);
+    }
+
+    private synchronized void finishGame(int winner) {
+        gameOver = true;
+        Journal.gameOver(gameId, id, winner);
+        if (deadlineSweep != null) {
+            deadlineSweep.cancel();
+            deadlineSweep = null;
+        }
+
+        // GAME_OVER tidak menunggu tick: kirim sisa perubahan posisi sekarang juga
+        broadcaster.cancelPending();
+        broadcastPositions();
+
+        // Kirim GAME_OVER dengan data lengkap untuk podium
+        Message winMsg = new Message(Message.Type.GAME_OVER)
+            .put("winnerId", winner)
+            .put("winnerName", players.name(winner))
+            .put("posMap", positionMap())
+            .put("names", nameMap());
+
+        broadcast(winMsg);
+        if (StatsStore.isEnabled()) StatsStore.recordRace(raceResults(winner));
+
+        Log.info("[Room {}] WINNER: {}", id, players.name(winner));
+        if (Log.isEnabled(Log.Level.DEBUG)) {
+            Log.debug("[Room {}] Final Positions: {}", id, positionMap());
+        }
+
+        // Reset room setelah game over
+        schedule(this::resetGame, 5, TimeUnit.SECONDS); // delay 5 detik (biar client lihat podium)
+    }
+
+    /** Hasil balapan semua pemain (termasuk yang sedang terputus) untuk StatsStore. */
+    private List<StatsStore.Result> raceResults(int winner) {
+        List<StatsStore.Result> results = new ArrayList<>(clients.size() + detached);
+        for (int playerId = 1; playerId <= players.capacity(); playerId++) {
+            String name = players.name(playerId);
+            if (!players.isActive(playerId) || name == null) continue;
+            results.add(new StatsStore.Result(name, playerId == winner, players.operation(playerId),
+                players.answered(playerId), players.correct(playerId), players.latencyCounts(playerId)));
+        }
+        return results;
+    }
+
+    /** Akhir batch GameLoop: satu broadcast untuk semua jawaban di batch itu. */
+    void flushBatch() {
+        broadcaster.flushPending();
+    }
+
+    /**
+     * Client lama menentukan bunyi benar/salah dari RESULT yang datang sebelum
+     * soal berikutnya, jadi pemain yang menjawab tetap langsung diberi snapshot.
+     * Client delta membaca hasilnya dari flag "correct" di QUESTION.
+     */
+    private void sendResultToLegacyClient(Connection connection) {
+        if (connection == PlayerTable.DETACHED) return;
+        connection.send(buildSnapshot());
+    }
+
+    /**
+     * Client lama selalu menerima RESULT penuh. Client delta hanya menerima
+     * POSITIONS berisi perubahan sejak broadcast sebelumnya (nama dikirim sekali
+     * saat join), kecuali kalau mereka butuh snapshot.
+     */
+    synchronized void broadcastPositions() {
+        long start = System.nanoTime();
+        Message delta = buildDelta();
+        if (delta != null) delta.shared();
+        Message full = null;
+        int recipients = 0;
+
+        for (Connection client : clients) {
+            if (client.deltaPositions && !client.needsSnapshot) {
+                if (delta != null) {
+                    client.send(delta);
+                    recipients++;
+                }
+            } else {
+                if (full == null) full = buildSnapshot().shared();
+                client.needsSnapshot = false;
+                client.send(full);
+                recipients++;
+            }
+        }
+
+        Metrics.BROADCASTS.increment();
+        Metrics.BROADCAST_RECIPIENTS.add(recipients);
+        Metrics.BROADCAST_NANOS.record(System.nanoTime() - start);
+    }
+
+    private Map<Integer, Integer> positionMap() {
+        Map<Integer, Integer> map = new HashMap<>();
+        for (int playerId = 1; playerId <= players.capacity(); playerId++) {
+            if (players.isActive(playerId)) map.put(playerId, players.position(playerId));
+        }
+        return map;
+    }
+
+    private Map<Integer, String> nameMap() {
+        Map<Integer, String> map = new HashMap<>();
+        for (int playerId = 1; playerId <= players.capacity(); playerId++) {
+            if (players.isActive(playerId)) map.put(playerId, players.name(playerId));
+        }
+        return map;
+    }
+
+    /** Boleh dipanggil tanpa lock; "seq" hanya berarti bagi client delta, yang dilayani di bawah lock. */
+    private Message buildSnapshot() {
+        return new Message(Message.Type.RESULT)
+            .put("posMap", positionMap())
+            .put("names", nameMap())
+            .put("seq", positionSeq);
+    }
+
+    /** Mengumpulkan dan mengosongkan perubahan sejak broadcast terakhir; null kalau tidak ada. */
+    private Message buildDelta() {
+        int changed = 0;
+        for (int playerId = 1; playerId <= players.capacity(); playerId++) {
+            if (players.isDirty(playerId)) changed++;
+        }
+        if (changed == 0 && leftPlayers.isEmpty()) {
+            return null;
+        }
+
+        int[] ids = new int[changed];
+        int[] pos = new int[changed];
+        int i = 0;
+        for (int playerId = 1; playerId <= players.capacity() && i < changed; playerId++) {
+            // Ambil flag dulu baru baca posisi: update yang menyusul akan menandai dirty lagi
+            if (players.takeDirty(playerId)) {
+                ids[i] = playerId;
+                pos[i] = players.position(playerId);
+                i++;
+            }
+        }
+        int[] left = new int[leftPlayers.size()];
+        int j = 0;
+        for (int id : leftPlayers) {
+            left[j++] = id;
+        }
+        positionSeq++;
+        Message msg = new Message(Message.Type.POSITIONS)
+            .put("seq", positionSeq)
+            .put("ids", Arrays.copyOf(ids, i))
+            .put("pos", Arrays.copyOf(pos, i))
+            .put("joined", new HashMap<>(joinedNames))
+            .put("left", left);
+        joinedNames.clear();
+        leftPlayers.clear();
+        return msg;
+    }
+
+    /** Client delta mendeteksi seq yang bolong; kirim ulang snapshot penuh. */
+    public synchronized void resync(Connection client) {
+        client.needsSnapshot = false;
+        client.send(buildSnapshot());
+    }
+
+    /** Pesan di-encode sekali untuk semua client (lihat SharedFrames). */
+    private void broadcast(Message msg) {
+        msg.shared();
+        for (Connection client : clients) {
+            client.send(msg);
+        }
+    }
+
+    /**
+     * Mengosongkan room supaya bisa dipakai matchmaking lagi. Koneksi lama
+     * dilepas dari room (client membuat koneksi baru untuk main lagi), jadi slot
+     * pemain yang dipakai ulang tidak bentrok dengan koneksi lama.
+     */
+    private synchronized void resetGame() {
+        Log.debug("[Room {}] Resetting game...", id);
+        detached = 0;
+        if (countdownTimer != null) {
+            countdownTimer.cancel();
+            countdownTimer = null;
+        }
+        if (deadlineSweep != null) {
+            deadlineSweep.cancel();
+            deadlineSweep = null;
+        }
+
+        for (Connection c : clients) {
+            c.room = null;
+        }
+        clients.clear();
+
+        gameOver = false;
+        gameStarted = false;
+        countdownStarted = false;
+        winnerId.set(0);
+        gameId = 0;
+
+        players.clear();
+        joinedNames.clear();
+        leftPlayers.clear();
+
+        Log.info("[Room {}] Reset complete. Ready for new game.", id);
+    }
+
+    /**
+     * Koneksi putus. Selama balapan belum selesai slot pemain ditahan
+     * {@code resumeMillis} (satu timer TimerWheel per pemain) supaya client
+     * bisa reattach; setelah itu, atau kalau resume dimatikan, pemain keluar.
+     */
+    public synchronized void removeClient(Connection client) {
+        if (!clients.remove(client)) return;
+        int playerId = client.playerId;
+        if (resumeMillis > 0 && !gameOver) {
+            players.detach(playerId);
+            hold(playerId, resumeMillis);
+            Log.info("[Room {}] Player {} disconnected, holding slot for {} ms", id, playerId, resumeMillis);
+            return;
+        }
+        leave(playerId);
+        Log.info("[Room {}] Player {} disconnected", id, playerId);
+        // Semua pemain keluar sebelum balapan selesai (mis. --resume-seconds=0):
+        // tidak ada GAME_OVER yang menjadwalkan reset, jadi reset di sini
+        if (!gameOver && clients.isEmpty() && detached == 0) {
+            resetGame();
+        } else {
+            broadcastPositions();
+        }
+    }
+
+    private void leave(int playerId) {
+        players.remove(playerId);
+        Journal.leave(gameId, id, playerId);
+        if (joinedNames.remove(playerId) == null) {
+            leftPlayers.add(playerId);
+        }
+    }
+
+    /** Slot DETACHED menunggu reattach; token ikut dicek supaya timer slot yang sudah dipakai ulang tidak berlaku. */
+    private void hold(int playerId, long millis) {
+        detached++;
+        long token = players.token(playerId);
+        resumeTimers[playerId] = schedule(() -> expireDetached(playerId, token), millis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void expireDetached(int playerId, long token) {
+        if (!players.isDetached(playerId) || players.token(playerId) != token) return;
+        resumeTimers[playerId] = null;
+        detached--;
+        leave(playerId);
+        RESUME_EXPIRED.increment();
+        Log.info("[Room {}] Player {} did not reconnect", id, playerId);
+        if (clients.isEmpty() && detached == 0) {
+            resetGame();
+        } else {
+            broadcastPositions();
+        }
+    }
+
+    /** Pemain dari snapshot; dipanggil saat restore, sebelum server menerima koneksi. */
+    synchronized void restorePlayer(int playerId, String name, int operation, int position, long question,
+                                    long token, long graceMillis) {
+        if (playerId < 1 || playerId > players.capacity()) return;
+        players.restore(playerId, name, operation, position, question, token);
+        hold(playerId, graceMillis);
+    }
+
+    /**
+     * Menyelesaikan restore: balapan yang sedang berjalan dilanjutkan (tanpa
+     * countdown), room yang masih menunggu mulai countdown lagi setelah dua
+     * pemain kembali.
+     */
+    synchronized void restored(long gameId, boolean racing) {
+        this.gameId = gameId;
+        if (racing) {
+            countdownStarted = true;
+            gameStarted = true;
+            if (questionNanos > 0) {
+                deadlineSweep = schedule(this::expireQuestions, DEADLINE_SWEEP_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}
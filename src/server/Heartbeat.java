@@ -0,0 +1,115 @@
+package server;
+
+import common.Message;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heartbeat dari server untuk client yang mengirim "heartbeat" di CONNECT.
+ * Setiap interval server mengirim PING berisi nomor urut "t"; client membalas
+ * dengan PING yang sama. PING tanpa "t" tetap dianggap ping dari client dan
+ * dibalas seperti dulu.
+ *
+ * Kalau {@code misses} PING berturut-turut tidak dibalas, koneksi dianggap
+ * mati (mis. TCP half-open) dan dikeluarkan lewat removeClient lalu ditutup,
+ * jadi broadcast tidak lagi menulis ke sana. Balasan PING juga dipakai untuk
+ * mengukur RTT per client (Connection.rttNanos, histogram heartbeat_rtt_nanos).
+ *
+ * Satu timer TimerWheel per koneksi, dijalankan di satu thread reaper.
+ */
+final class Heartbeat {
+    private static final Metrics.Histogram RTT_NANOS = Metrics.histogram("heartbeat_rtt_nanos");
+    private static final Metrics.Counter EVICTIONS = Metrics.counter("heartbeat_evictions_total");
+
+    private final ServerMain server;
+    private final TimerWheel timers;
+    private final Executor executor;
+    private volatile long intervalMillis;
+    private volatile int misses;
+
+    Heartbeat(ServerMain server, TimerWheel timers, long intervalMillis, int misses) {
+        this.server = server;
+        this.timers = timers;
+        this.executor = ServerThreads.newExecutor("heartbeat-reaper");
+        configure(intervalMillis, misses);
+    }
+
+    /**
+     * Berlaku untuk koneksi yang connect setelahnya.
+     *
+     * @param intervalMillis jarak antar PING; 0 = heartbeat mati
+     * @param misses         jumlah PING tanpa balasan sebelum koneksi diputus
+     */
+    void configure(long intervalMillis, int misses) {
+        this.intervalMillis = Math.max(0, intervalMillis);
+        this.misses = Math.max(1, misses);
+    }
+
+    /** True kalau client meminta heartbeat di CONNECT. */
+    static boolean requested(Message connect) {
+        return Boolean.TRUE.equals(connect.get("heartbeat"));
+    }
+
+    /** Mulai mengirim PING ke koneksi ini; dipanggil setelah CONNECT_ACK. */
+    void start(Connection connection) {
+        if (intervalMillis == 0) return;
+        schedule(connection);
+    }
+
+    /** Dipanggil saat koneksi ditutup. */
+    void stop(Connection connection) {
+        connection.heartbeatStopped = true;
+        TimerWheel.Timeout timer = connection.heartbeatTimer;
+        if (timer != null) {
+            timer.cancel();
+            connection.heartbeatTimer = null;
+        }
+    }
+
+    /**
+     * Menangani PING dari client: balasan heartbeat (ada "t") dicatat,
+     * ping biasa dibalas.
+     */
+    void onPing(Connection connection, Message msg) {
+        Object t = msg.get("t");
+        if (t == null) {
+            connection.send(new Message(Message.Type.PING));
+            return;
+        }
+        if (t instanceof Integer && (Integer) t == connection.pingSeq) {
+            long rtt = System.nanoTime() - connection.pingSentNanos;
+            connection.rttNanos = rtt;
+            RTT_NANOS.record(rtt);
+        }
+        connection.missedPings = 0;
+    }
+
+    private void schedule(Connection connection) {
+        TimerWheel.Timeout timer = timers.schedule(() -> tick(connection), intervalMillis, TimeUnit.MILLISECONDS, executor);
+        connection.heartbeatTimer = timer;
+        // stop() bisa berjalan setelah cek di tick tetapi sebelum timer baru terlihat:
+        // flag ditulis sebelum stop() membaca timer, jadi salah satu pihak pasti membatalkannya
+        if (connection.heartbeatStopped) {
+            timer.cancel();
+        }
+    }
+
+    private void tick(Connection connection) {
+        if (connection.heartbeatStopped) return;
+        if (connection.missedPings >= misses) {
+            connection.heartbeatStopped = true;
+            connection.heartbeatTimer = null;
+            EVICTIONS.increment();
+            Log.info("Player {} missed {} heartbeats, disconnecting", connection.playerId, connection.missedPings);
+            server.removeClient(connection);
+            connection.close();
+            return;
+        }
+        connection.missedPings++;
+        connection.pingSeq++;
+        connection.pingSentNanos = System.nanoTime();
+        connection.send(new Message(Message.Type.PING).put("t", connection.pingSeq));
+        schedule(connection);
+    }
+}
@@ -0,0 +1,354 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Jurnal biner append-only berisi semua kejadian balapan (--journal=path):
+ * pemain join/keluar, soal yang dikirim (id, teks, jawaban), jawaban yang
+ * diterima (waktu, nilai, hasil), perubahan posisi dan pemenang. Dengan ini
+ * balapan yang sudah di-reset tetap bisa diputar ulang (JournalReplay).
+ *
+ * Seperti Log: thread game hanya mengisi slot di ring buffer (tanpa alokasi
+ * dan tanpa I/O); satu thread writer meng-encode ke buffer dan menulisnya ke
+ * FileChannel per batch. Tidak ada fsync per kejadian; force() hanya saat
+ * server berhenti. Berbeda dengan Log, kejadian tidak pernah dibuang: kalau
+ * ring penuh, pemanggil menunggu writer.
+ *
+ * Format file: MAGIC, lalu record berurutan:
+ *   type u1, waktu u8 (epoch nanos), gameId u8, roomId u4, playerId u4, lalu
+ *   JOIN: nama | START: jumlah pemain u4 | QUESTION: qId u4, jawaban u4, teks
+ *   ANSWER: qId u4, nilai u4, status u1 | TIMEOUT: qId u4 | POSITION: posisi u4
+ *   LEAVE, GAME_OVER (playerId = pemenang): kosong
+ * String ditulis sebagai panjang u2 + UTF-8.
+ */
+public final class Journal {
+    static final int MAGIC = 0x4C4D514A; // "LMQJ"
+
+    static final byte JOIN = 1;
+    static final byte LEAVE = 2;
+    static final byte START = 3;
+    static final byte QUESTION = 4;
+    static final byte ANSWER = 5;
+    static final byte TIMEOUT = 6;
+    static final byte POSITION = 7;
+    static final byte GAME_OVER = 8;
+
+    /** Status ANSWER: soal sudah diganti / bukan soal aktif, salah, benar. */
+    static final int STALE = 0;
+    static final int WRONG = 1;
+    static final int CORRECT = 2;
+
+    static final int HEADER_BYTES = 1 + 8 + 8 + 4 + 4;
+    static final int MAX_STRING_BYTES = 1024;
+    // Record terbesar: QUESTION dengan teks sepanjang MAX_STRING_BYTES
+    private static final int MAX_RECORD_BYTES = HEADER_BYTES + 4 + 4 + 2 + MAX_STRING_BYTES;
+
+    /** Hasil recordLength: record belum lengkap di buffer / tipe tidak dikenal (file rusak). */
+    static final int INCOMPLETE = -1;
+    static final int INVALID = -2;
+
+    private static final int RING_SIZE = 1 << 16;
+    private static final int MASK = RING_SIZE - 1;
+    private static final int BUFFER_BYTES = 1 << 18;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private static final Metrics.Counter EVENTS = Metrics.counter("journal_events_total");
+    private static final Metrics.Counter BYTES = Metrics.counter("journal_bytes_total");
+
+    private static volatile boolean enabled = false;
+    private static final AtomicLong nextGameId = new AtomicLong(System.currentTimeMillis() * 1000);
+
+    private static Slot[] slots;
+    private static final AtomicLong tail = new AtomicLong();
+    // Hanya disentuh thread writer
+    private static long head = 0;
+    private static FileChannel channel;
+    private static ByteBuffer buffer;
+    private static long epochOffsetNanos;
+
+    private static final class Slot {
+        volatile long seq;
+        byte type;
+        long time;
+        long game;
+        int room;
+        int player;
+        int a;
+        int b;
+        byte status;
+        byte[] utf8;
+
+        Slot(long seq) {
+            this.seq = seq;
+        }
+    }
+
+    private Journal() {
+    }
+
+    /** Membuka (atau melanjutkan) file jurnal dan memulai thread writer. */
+    public static synchronized void open(Path path) throws IOException {
+        if (enabled) return;
+        // Record tidak punya panjang atau checksum: sisa record yang terpotong (server
+        // mati saat menulis) harus dibuang dulu, kalau tidak record baru terbaca bergeser
+        long complete = Files.exists(path) ? completeLength(path) : 0;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+        if (channel.size() > complete) {
+            Log.warn("Journal: dropping {} bytes of torn record at end of {}", channel.size() - complete, path);
+            channel.truncate(complete);
+        }
+        buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        if (channel.size() == 0) {
+            buffer.putInt(MAGIC);
+        }
+        epochOffsetNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - System.nanoTime();
+        slots = new Slot[RING_SIZE];
+        for (int i = 0; i < RING_SIZE; i++) {
+            slots[i] = new Slot(i);
+        }
+        Thread writer = new Thread(Journal::writeLoop, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Journal::close, "journal-close"));
+        enabled = true;
+        Log.info("Journal: {} ({} bytes)", path.toAbsolutePath(), Files.size(path));
+    }
+
+    /** Panjang bagian file yang berisi MAGIC dan record utuh saja. */
+    private static long completeLength(Path path) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (in.size() < 4) return 0;
+            ByteBuffer buf = ByteBuffer.allocate(BUFFER_BYTES);
+            in.read(buf, 0);
+            if (buf.getInt(0) != MAGIC) throw new IOException("Not a journal file: " + path);
+            long complete = 4;
+            while (true) {
+                buf.clear();
+                if (in.read(buf, complete) <= 0) break;
+                buf.flip();
+                int length;
+                while ((length = recordLength(buf)) >= 0) {
+                    buf.position(buf.position() + length);
+                }
+                complete += buf.position();
+                // Record tidak lengkap di akhir file, atau tipe yang tidak dikenal
+                if (length == INVALID || buf.position() == 0) break;
+            }
+            return complete;
+        }
+    }
+
+    /**
+     * Panjang record di posisi buffer sekarang; INCOMPLETE kalau belum lengkap
+     * di buffer, INVALID kalau tipenya tidak dikenal.
+     */
+    static int recordLength(ByteBuffer buf) {
+        int p = buf.position();
+        int available = buf.remaining();
+        if (available < 1) return INCOMPLETE;
+        int length = HEADER_BYTES;
+        switch (buf.get(p)) {
+            case JOIN:
+                if (available < length + 2) return INCOMPLETE;
+                length += 2 + (buf.getShort(p + length) & 0xFFFF);
+                break;
+            case START:
+            case TIMEOUT:
+            case POSITION:
+                length += 4;
+                break;
+            case QUESTION:
+                if (available < length + 10) return INCOMPLETE;
+                length += 10 + (buf.getShort(p + length + 8) & 0xFFFF);
+                break;
+            case ANSWER:
+                length += 9;
+                break;
+            case LEAVE:
+            case GAME_OVER:
+                break;
+            default:
+                return INVALID;
+        }
+        return available < length ? INCOMPLETE : length;
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Id unik untuk satu balapan, juga antar-restart server. */
+    static long newGameId() {
+        return nextGameId.incrementAndGet();
+    }
+
+    static void join(long game, int room, int player, String name) {
+        if (enabled) append(JOIN, game, room, player, 0, 0, name == null ? null : name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static void leave(long game, int room, int player) {
+        if (enabled) append(LEAVE, game, room, player, 0, 0, null);
+    }
+
+    static void start(long game, int room, int playerCount) {
+        if (enabled) append(START, game, room, 0, playerCount, 0, null);
+    }
+
+    static void question(long game, int room, int player, int qId, int answer, byte[] textUtf8) {
+        if (enabled) append(QUESTION, game, room, player, qId, answer, textUtf8);
+    }
+
+    static void answer(long game, int room, int player, int qId, int value, int status) {
+        if (enabled) append(ANSWER, game, room, player, qId, value, null, status);
+    }
+
+    static void timeout(long game, int room, int player, int qId) {
+        if (enabled) append(TIMEOUT, game, room, player, qId, 0, null);
+    }
+
+    static void position(long game, int room, int player, int position) {
+        if (enabled) append(POSITION, game, room, player, position, 0, null);
+    }
+
+    static void gameOver(long game, int room, int winner) {
+        if (enabled) append(GAME_OVER, game, room, winner, 0, 0, null);
+    }
+
+    private static void append(byte type, long game, int room, int player, int a, int b, byte[] utf8) {
+        append(type, game, room, player, a, b, utf8, 0);
+    }
+
+    private static void append(byte type, long game, int room, int player, int a, int b, byte[] utf8, int status) {
+        long time = System.nanoTime();
+        long pos = tail.get();
+        while (true) {
+            Slot s = slots[(int) (pos & MASK)];
+            long diff = s.seq - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) break;
+                pos = tail.get();
+            } else if (diff < 0) {
+                // Ring penuh: tunggu writer, jangan buang kejadian
+                Thread.yield();
+                pos = tail.get();
+            } else {
+                pos = tail.get();
+            }
+        }
+        Slot s = slots[(int) (pos & MASK)];
+        s.type = type;
+        s.time = time;
+        s.game = game;
+        s.room = room;
+        s.player = player;
+        s.a = a;
+        s.b = b;
+        s.status = (byte) status;
+        s.utf8 = utf8;
+        s.seq = pos + 1;
+    }
+
+    // ===== Thread writer =====
+
+    private static void writeLoop() {
+        while (true) {
+            if (!drain()) {
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+    }
+
+    private static synchronized boolean drain() {
+        boolean wrote = false;
+        try {
+            while (true) {
+                Slot s = slots[(int) (head & MASK)];
+                if (s.seq != head + 1) break;
+                if (buffer.remaining() < MAX_RECORD_BYTES) {
+                    writeBuffer();
+                }
+                encode(s);
+                s.utf8 = null;
+                s.seq = head + RING_SIZE;
+                head++;
+                wrote = true;
+                EVENTS.increment();
+            }
+            if (buffer.position() > 0) writeBuffer();
+        } catch (IOException e) {
+            Log.error("Journal: write failed", e);
+        }
+        return wrote;
+    }
+
+    private static void encode(Slot s) {
+        buffer.put(s.type);
+        buffer.putLong(s.time + epochOffsetNanos);
+        buffer.putLong(s.game);
+        buffer.putInt(s.room);
+        buffer.putInt(s.player);
+        switch (s.type) {
+            case JOIN:
+                string(s.utf8);
+                break;
+            case START:
+            case TIMEOUT:
+            case POSITION:
+                buffer.putInt(s.a);
+                break;
+            case QUESTION:
+                buffer.putInt(s.a);
+                buffer.putInt(s.b);
+                string(s.utf8);
+                break;
+            case ANSWER:
+                buffer.putInt(s.a);
+                buffer.putInt(s.b);
+                buffer.put(s.status);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void string(byte[] utf8) {
+        int len = utf8 == null ? 0 : Math.min(utf8.length, MAX_STRING_BYTES);
+        buffer.putShort((short) len);
+        if (len > 0) buffer.put(utf8, 0, len);
+    }
+
+    private static void writeBuffer() throws IOException {
+        buffer.flip();
+        BYTES.add(buffer.remaining());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /** Menulis semua kejadian yang sudah masuk ring lalu fsync sekali. */
+    static synchronized void sync() throws IOException {
+        drain();
+        channel.force(false);
+    }
+
+    /** Dipanggil saat JVM berhenti. */
+    private static synchronized void close() {
+        try {
+            sync();
+            channel.close();
+        } catch (IOException e) {
+            Log.error("Journal: failed to close journal file", e);
+        }
+    }
+}
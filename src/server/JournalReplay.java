@@ -0,0 +1,310 @@
+package server;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Memutar ulang file Journal.
+ *
+ *   java -cp out server.JournalReplay journal.bin              ringkasan semua balapan
+ *   java -cp out server.JournalReplay journal.bin --game=ID    timeline satu balapan
+ *   java -cp out server.JournalReplay journal.bin --generate=N tulis N kejadian sintetis
+ *
+ * File dibaca per blok 1 MB lewat FileChannel dan di-decode langsung dari
+ * buffer; teks soal hanya di-decode untuk balapan yang diminta. Record
+ * terakhir yang terpotong (server mati saat menulis) diabaikan.
+ */
+public class JournalReplay {
+    private static final int READ_BYTES = 1 << 20;
+    private static final DateTimeFormatter TIME =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final PrintStream out;
+    private final long selectedGame;
+    private final Map<Long, Game> games = new LinkedHashMap<>();
+    private Game last;
+    private long events;
+    private long bytes;
+
+    /** State satu balapan hasil rekonstruksi. */
+    static final class Game {
+        final long id;
+        final int room;
+        final long firstNanos;
+        long lastNanos;
+        long events;
+        int players;
+        int answers;
+        int correct;
+        int wrong;
+        int stale;
+        int timeouts;
+        int winner;
+        String[] names = new String[16];
+        int[] positions = new int[16];
+
+        Game(long id, int room, long firstNanos) {
+            this.id = id;
+            this.room = room;
+            this.firstNanos = firstNanos;
+        }
+
+        void ensure(int player) {
+            if (player >= names.length) {
+                int size = Math.max(player + 1, names.length * 2);
+                names = Arrays.copyOf(names, size);
+                positions = Arrays.copyOf(positions, size);
+            }
+        }
+    }
+
+    JournalReplay(PrintStream out, long selectedGame) {
+        this.out = out;
+        this.selectedGame = selectedGame;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: JournalReplay <journal> [--game=ID] [--generate=N]");
+            System.exit(2);
+        }
+        Path path = Paths.get(args[0]);
+        long game = 0;
+        long generate = 0;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--game=")) {
+                game = Long.parseLong(args[i].substring("--game=".length()));
+            } else if (args[i].startsWith("--generate=")) {
+                generate = Long.parseLong(args[i].substring("--generate=".length()));
+            }
+        }
+        if (generate > 0) {
+            generate(path, generate);
+            return;
+        }
+
+        JournalReplay replay = new JournalReplay(System.out, game);
+        long start = System.nanoTime();
+        replay.read(path);
+        long nanos = System.nanoTime() - start;
+        if (game == 0) {
+            replay.printSummary();
+        } else {
+            replay.printResult(game);
+        }
+        System.out.printf("%d events, %.1f MB in %.1f ms (%.2f M events/s)%n", replay.events,
+            replay.bytes / 1e6, nanos / 1e6, replay.events * 1e3 / Math.max(1, nanos));
+    }
+
+    void read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(READ_BYTES);
+            boolean header = false;
+            while (channel.read(buf) >= 0 || buf.position() > 0) {
+                buf.flip();
+                if (!header) {
+                    if (buf.remaining() < 4) break;
+                    if (buf.getInt() != Journal.MAGIC) throw new IOException("Not a journal file: " + path);
+                    header = true;
+                }
+                int before = buf.remaining();
+                int length;
+                while ((length = Journal.recordLength(buf)) >= 0) {
+                    int next = buf.position() + length;
+                    event(buf);
+                    buf.position(next);
+                }
+                bytes += before - buf.remaining();
+                if (length == Journal.INVALID) {
+                    System.err.println("Corrupt record at offset " + (4 + bytes) + ", stopping");
+                    break;
+                }
+                if (buf.remaining() == buf.capacity()) {
+                    throw new IOException("Record larger than read buffer");
+                }
+                boolean partial = buf.hasRemaining();
+                buf.compact();
+                // Sisa yang tidak pernah lengkap di akhir file adalah record terpotong
+                if (partial && channel.position() == channel.size()) break;
+            }
+        }
+    }
+
+    private void event(ByteBuffer buf) {
+        int p = buf.position();
+        byte type = buf.get(p);
+        long time = buf.getLong(p + 1);
+        long id = buf.getLong(p + 9);
+        int room = buf.getInt(p + 17);
+        int player = buf.getInt(p + 21);
+        int body = p + Journal.HEADER_BYTES;
+        events++;
+
+        Game game = last;
+        if (game == null || game.id != id) {
+            game = games.get(id);
+            if (game == null) {
+                game = new Game(id, room, time);
+                games.put(id, game);
+            }
+            last = game;
+        }
+        game.lastNanos = time;
+        game.events++;
+        game.ensure(player);
+
+        switch (type) {
+            case Journal.JOIN:
+                game.names[player] = string(buf, body);
+                game.positions[player] = 0;
+                game.players++;
+                break;
+            case Journal.ANSWER: {
+                int status = buf.get(body + 8);
+                game.answers++;
+                if (status == Journal.CORRECT) game.correct++;
+                else if (status == Journal.WRONG) game.wrong++;
+                else game.stale++;
+                break;
+            }
+            case Journal.TIMEOUT:
+                game.timeouts++;
+                break;
+            case Journal.POSITION:
+                game.positions[player] = buf.getInt(body);
+                break;
+            case Journal.GAME_OVER:
+                game.winner = player;
+                break;
+            default:
+                break;
+        }
+        if (id == selectedGame) {
+            printEvent(game, buf, type, time, player, body);
+        }
+    }
+
+    private static String string(ByteBuffer buf, int at) {
+        int len = buf.getShort(at) & 0xFFFF;
+        byte[] b = new byte[len];
+        buf.get(at + 2, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private void printEvent(Game game, ByteBuffer buf, byte type, long time, int player, int body) {
+        String at = String.format("+%9.3fs  ", (time - game.firstNanos) / 1e9);
+        switch (type) {
+            case Journal.JOIN:
+                out.println(at + "JOIN      p" + player + " " + game.names[player]);
+                break;
+            case Journal.LEAVE:
+                out.println(at + "LEAVE     p" + player);
+                break;
+            case Journal.START:
+                out.println(at + "START     " + buf.getInt(body) + " players");
+                break;
+            case Journal.QUESTION:
+                out.println(at + "QUESTION  p" + player + " q" + buf.getInt(body) + " \""
+                    + string(buf, body + 8) + "\" = " + buf.getInt(body + 4));
+                break;
+            case Journal.ANSWER: {
+                int status = buf.get(body + 8);
+                out.println(at + "ANSWER    p" + player + " q" + buf.getInt(body) + " " + buf.getInt(body + 4) + " "
+                    + (status == Journal.CORRECT ? "correct" : status == Journal.WRONG ? "wrong" : "stale"));
+                break;
+            }
+            case Journal.TIMEOUT:
+                out.println(at + "TIMEOUT   p" + player + " q" + buf.getInt(body));
+                break;
+            case Journal.POSITION:
+                out.println(at + "POSITION  p" + player + " -> " + buf.getInt(body));
+                break;
+            case Journal.GAME_OVER:
+                out.println(at + "GAME_OVER winner p" + player + " " + game.names[player]);
+                break;
+            default:
+                out.println(at + "UNKNOWN   type " + type);
+                break;
+        }
+    }
+
+    void printSummary() {
+        for (Game g : games.values()) {
+            out.printf("game %d  room %d  %s  %5.1fs  players %d  answers %d (correct %d, wrong %d, stale %d)"
+                    + "  timeouts %d  winner %s%n",
+                g.id, g.room, TIME.format(Instant.ofEpochMilli(g.firstNanos / 1_000_000)),
+                (g.lastNanos - g.firstNanos) / 1e9, g.players, g.answers, g.correct, g.wrong, g.stale,
+                g.timeouts, g.winner == 0 ? "-" : g.names[g.winner] + " (p" + g.winner + ")");
+        }
+        out.println(games.size() + " games");
+    }
+
+    void printResult(long id) {
+        Game g = games.get(id);
+        if (g == null) {
+            out.println("game " + id + " not found");
+            return;
+        }
+        out.println("final positions:");
+        for (int p = 1; p < g.names.length; p++) {
+            if (g.names[p] != null) out.println("  p" + p + " " + g.names[p] + ": " + g.positions[p]);
+        }
+        out.println("winner: " + (g.winner == 0 ? "-" : g.names[g.winner] + " (p" + g.winner + ")"));
+    }
+
+    /**
+     * File sintetis untuk mengukur kecepatan replay: balapan 8 pemain berisi
+     * soal, jawaban (75% benar) dan posisi, ditulis lewat Journal yang sama
+     * dengan server.
+     */
+    private static void generate(Path path, long count) throws IOException {
+        Journal.open(path);
+        QuestionPool pool = new QuestionPool();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long written = 0;
+        int room = 1;
+        while (written < count) {
+            long game = Journal.newGameId();
+            for (int p = 1; p <= 8; p++) Journal.join(game, room, p, "Bot" + p);
+            Journal.start(game, room, 8);
+            written += 9;
+            int[] pos = new int[9];
+            int[] qIds = new int[9];
+            int winner = 0;
+            while (winner == 0 && written < count) {
+                int p = 1 + random.nextInt(8);
+                QuestionPool.Entry q = pool.take(QuestionPool.ADD, QuestionPool.NORMAL);
+                int qId = ++qIds[p];
+                Journal.question(game, room, p, qId, q.answer, q.utf8);
+                boolean correct = random.nextInt(4) != 0;
+                Journal.answer(game, room, p, qId, correct ? q.answer : q.answer + 1,
+                    correct ? Journal.CORRECT : Journal.WRONG);
+                written += 2;
+                if (correct) {
+                    pos[p] += 10;
+                    Journal.position(game, room, p, pos[p]);
+                    written++;
+                    if (pos[p] >= 100) winner = p;
+                }
+            }
+            Journal.gameOver(game, room, winner);
+            written++;
+            room = room % 64 + 1;
+        }
+        Journal.sync();
+        System.out.println(written + " events written to " + path);
+    }
+}
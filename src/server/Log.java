@@ -0,0 +1,220 @@
+package server;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logging asinkron untuk server. Pemanggil hanya mengklaim slot di ring buffer
+ * (satu CAS) dan menyimpan template serta argumennya; format "{}" dan tulis ke
+ * stdout dikerjakan satu thread flusher di belakang. Kalau level-nya mati,
+ * tidak ada yang diformat sama sekali. Kalau ring penuh, pesan dibuang dan
+ * dihitung (log_dropped_total) daripada menahan thread game.
+ *
+ * Level bisa diubah saat berjalan: --log-level=debug atau GET /log?level=debug
+ * di endpoint metrik.
+ */
+public final class Log {
+    public enum Level { ERROR, WARN, INFO, DEBUG }
+
+    private static final int RING_SIZE = 8192;
+    private static final int MASK = RING_SIZE - 1;
+    // Jeda flusher saat ring kosong; pemanggil tidak pernah membangunkannya
+    private static final long FLUSH_IDLE_NANOS = 5_000_000L;
+    private static final DateTimeFormatter TIME =
+        DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private static volatile Level level = Level.INFO;
+
+    private static final Slot[] slots = new Slot[RING_SIZE];
+    private static final AtomicLong tail = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+    // Hanya disentuh thread flusher
+    private static long head = 0;
+    private static final Writer out =
+        new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+    private static final StringBuilder line = new StringBuilder(256);
+
+    static {
+        for (int i = 0; i < RING_SIZE; i++) {
+            slots[i] = new Slot(i);
+        }
+        Thread t = new Thread(Log::flushLoop, "log-flusher");
+        t.setDaemon(true);
+        t.start();
+        // Pesan yang masih di ring ikut tertulis saat JVM berhenti
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::drain, "log-drain"));
+    }
+
+    /** Satu entri ring; seq menandai giliran siapa (Vyukov bounded queue). */
+    private static final class Slot {
+        volatile long seq;
+        Level level;
+        long time;
+        String thread;
+        String template;
+        int argc;
+        Object a1, a2, a3;
+        Object[] args;
+
+        Slot(long seq) {
+            this.seq = seq;
+        }
+    }
+
+    private Log() {
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static Level level() {
+        return level;
+    }
+
+    public static boolean isEnabled(Level l) {
+        return l.ordinal() <= level.ordinal();
+    }
+
+    public static long dropped() {
+        return dropped.get();
+    }
+
+    public static void error(String template, Object... args) { logArray(Level.ERROR, template, args); }
+    public static void warn(String template) { log(Level.WARN, template, 0, null, null, null); }
+    public static void warn(String template, Object a1) { log(Level.WARN, template, 1, a1, null, null); }
+    public static void warn(String template, Object a1, Object a2) { log(Level.WARN, template, 2, a1, a2, null); }
+    public static void warn(String template, Object... args) { logArray(Level.WARN, template, args); }
+    public static void info(String template) { log(Level.INFO, template, 0, null, null, null); }
+    public static void info(String template, Object a1) { log(Level.INFO, template, 1, a1, null, null); }
+    public static void info(String template, Object a1, Object a2) { log(Level.INFO, template, 2, a1, a2, null); }
+    public static void info(String template, Object a1, Object a2, Object a3) { log(Level.INFO, template, 3, a1, a2, a3); }
+    public static void info(String template, Object... args) { logArray(Level.INFO, template, args); }
+    public static void debug(String template) { log(Level.DEBUG, template, 0, null, null, null); }
+    public static void debug(String template, Object a1) { log(Level.DEBUG, template, 1, a1, null, null); }
+    public static void debug(String template, Object a1, Object a2) { log(Level.DEBUG, template, 2, a1, a2, null); }
+    public static void debug(String template, Object a1, Object a2, Object a3) { log(Level.DEBUG, template, 3, a1, a2, a3); }
+    public static void debug(String template, Object... args) { logArray(Level.DEBUG, template, args); }
+
+    private static void logArray(Level l, String template, Object[] args) {
+        if (!isEnabled(l)) return;
+        long pos = claim();
+        if (pos < 0) return;
+        fill(pos, l, template, -1, null, null, null, args);
+    }
+
+    private static void log(Level l, String template, int argc, Object a1, Object a2, Object a3) {
+        if (!isEnabled(l)) return;
+        long pos = claim();
+        if (pos < 0) return;
+        fill(pos, l, template, argc, a1, a2, a3, null);
+    }
+
+    /** Mengklaim posisi slot kosong berikutnya; -1 (dan dihitung) kalau ring penuh. */
+    private static long claim() {
+        long pos = tail.get();
+        while (true) {
+            Slot s = slots[(int) (pos & MASK)];
+            long diff = s.seq - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) return pos;
+                pos = tail.get();
+            } else if (diff < 0) {
+                dropped.incrementAndGet();
+                return -1;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    private static void fill(long pos, Level l, String template, int argc,
+                             Object a1, Object a2, Object a3, Object[] args) {
+        Slot s = slots[(int) (pos & MASK)];
+        s.level = l;
+        s.time = System.currentTimeMillis();
+        s.thread = Thread.currentThread().getName();
+        s.template = template;
+        s.argc = argc;
+        s.a1 = a1;
+        s.a2 = a2;
+        s.a3 = a3;
+        s.args = args;
+        // Publikasi: flusher baru membaca slot setelah seq ini terlihat
+        s.seq = pos + 1;
+    }
+
+    // ===== Sisi flusher =====
+
+    private static void flushLoop() {
+        while (true) {
+            if (!drain()) {
+                LockSupport.parkNanos(FLUSH_IDLE_NANOS);
+            }
+        }
+    }
+
+    /** Menulis semua entri yang sudah terpublikasi; true kalau ada yang ditulis. */
+    private static synchronized boolean drain() {
+        boolean wrote = false;
+        try {
+            while (true) {
+                Slot s = slots[(int) (head & MASK)];
+                if (s.seq != head + 1) break;
+                format(s);
+                out.write(line.toString());
+                // Lepas referensi argumen supaya tidak tertahan di ring
+                s.a1 = s.a2 = s.a3 = null;
+                s.args = null;
+                s.template = null;
+                s.seq = head + RING_SIZE;
+                head++;
+                wrote = true;
+            }
+            if (wrote) out.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return wrote;
+    }
+
+    private static void format(Slot s) {
+        line.setLength(0);
+        TIME.formatTo(Instant.ofEpochMilli(s.time), line);
+        line.append(' ').append(s.level.name());
+        for (int i = s.level.name().length(); i < 5; i++) line.append(' ');
+        line.append(" [").append(s.thread).append("] ");
+
+        Object[] args = s.args;
+        int argc = args != null ? args.length : Math.max(s.argc, 0);
+        Throwable thrown = null;
+        String template = s.template;
+        int from = 0;
+        for (int i = 0; i < argc; i++) {
+            Object arg = args != null ? args[i] : (i == 0 ? s.a1 : i == 1 ? s.a2 : s.a3);
+            int at = template.indexOf("{}", from);
+            if (at < 0) {
+                if (arg instanceof Throwable) thrown = (Throwable) arg;
+                continue;
+            }
+            line.append(template, from, at).append(arg);
+            from = at + 2;
+        }
+        line.append(template, from, template.length()).append('\n');
+        if (thrown != null) {
+            StringWriter trace = new StringWriter();
+            thrown.printStackTrace(new PrintWriter(trace));
+            line.append(trace);
+        }
+    }
+}
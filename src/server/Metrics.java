@@ -0,0 +1,272 @@
+package server;
+
+import com.sun.net.httpserver.HttpServer;
+import common.Message;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry metrik server: counter, gauge dan histogram latensi. Metrik yang
+ * dipakai di jalur panas adalah field static di sini, jadi mencatat cukup satu
+ * operasi atomik tanpa lookup. Semua metrik bisa dibaca lewat HTTP lokal
+ * (--metrics-port) dalam format teks "nama nilai" per baris.
+ */
+public final class Metrics {
+    private static final Map<String, Object> registry = new ConcurrentSkipListMap<>();
+
+    public static final Counter ANSWERS = counter("answers_total");
+    public static final Counter ANSWERS_CORRECT = counter("answers_correct_total");
+    public static final Counter QUESTION_TIMEOUTS = counter("question_timeouts_total");
+    public static final Histogram ANSWER_NANOS = histogram("process_answer_nanos");
+    public static final Counter BROADCASTS = counter("broadcasts_total");
+    public static final Counter BROADCAST_RECIPIENTS = counter("broadcast_recipients_total");
+    public static final Histogram BROADCAST_NANOS = histogram("broadcast_fanout_nanos");
+    public static final Counter CONNECTIONS = counter("connections_total");
+    public static final AtomicLong CONNECTED = new AtomicLong();
+    private static final Counter[] BYTES_SENT = new Counter[Message.Type.values().length];
+
+    static {
+        gauge("clients_connected", CONNECTED::get);
+        gauge("answers_correct_ratio_permille", () -> {
+            long answers = ANSWERS.get();
+            return answers == 0 ? 0 : ANSWERS_CORRECT.get() * 1000 / answers;
+        });
+        for (Message.Type type : Message.Type.values()) {
+            BYTES_SENT[type.ordinal()] = counter("bytes_sent_total{type=\"" + type + "\"}");
+        }
+        gauge("log_dropped_total", Log::dropped);
+        // Biaya per koneksi tiap --mode: thread platform (virtual thread tidak terhitung) dan memori
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        gauge("jvm_threads_live", threads::getThreadCount);
+        gauge("jvm_threads_peak", threads::getPeakThreadCount);
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        gauge("jvm_heap_used_bytes", () -> memory.getHeapMemoryUsage().getUsed());
+        gauge("process_resident_bytes", Metrics::residentBytes);
+        OutboundQueue.registerMetrics();
+    }
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name) {
+        return (Counter) registry.computeIfAbsent(name, n -> new Counter());
+    }
+
+    public static Histogram histogram(String name) {
+        return (Histogram) registry.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    public static void gauge(String name, LongSupplier value) {
+        registry.put(name, value);
+    }
+
+    static void bytesSent(Message.Type type, long bytes) {
+        BYTES_SENT[type.ordinal()].add(bytes);
+    }
+
+    /** Semua metrik dalam format teks; histogram diringkas menjadi count, persentil dan max. */
+    public static String render() {
+        StringBuilder sb = new StringBuilder(4096);
+        for (Map.Entry<String, Object> e : registry.entrySet()) {
+            String name = e.getKey();
+            Object metric = e.getValue();
+            if (metric instanceof Counter) {
+                line(sb, name, ((Counter) metric).get());
+            } else if (metric instanceof Histogram) {
+                Histogram h = (Histogram) metric;
+                line(sb, name + "_count", h.count());
+                line(sb, name + "{quantile=\"0.5\"}", h.percentile(50));
+                line(sb, name + "{quantile=\"0.99\"}", h.percentile(99));
+                line(sb, name + "{quantile=\"0.999\"}", h.percentile(99.9));
+                line(sb, name + "_max", h.max());
+            } else if (metric instanceof LongSupplier) {
+                line(sb, name, ((LongSupplier) metric).getAsLong());
+            }
+        }
+        return sb.toString();
+    }
+
+    /** RSS proses dari /proc (Linux saja, selain itu -1); termasuk stack thread yang tidak ada di heap. */
+    private static long residentBytes() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // bukan Linux
+        }
+        return -1;
+    }
+
+    private static void line(StringBuilder sb, String name, long value) {
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    /** Endpoint HTTP di 127.0.0.1 saja: GET /metrics. */
+    public static void startHttp(int port) throws IOException {
+        HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        http.createContext("/metrics", exchange -> {
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        // GET /log?level=debug mengubah level log tanpa restart; tanpa parameter hanya menampilkan level
+        http.createContext("/log", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            int status = 200;
+            if (query != null && query.startsWith("level=")) {
+                try {
+                    Log.setLevel(Log.Level.valueOf(query.substring("level=".length()).toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    status = 400;
+                }
+            }
+            byte[] body = ("level=" + Log.level() + "\n").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        // GET /leaderboard?n=10 dan /stats?name=... dari StatsStore (--stats)
+        http.createContext("/leaderboard", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            int n = 10;
+            if (query != null && query.startsWith("n=")) {
+                try {
+                    n = Integer.parseInt(query.substring("n=".length()));
+                } catch (NumberFormatException e) {
+                    // pakai default
+                }
+            }
+            int status = n < 0 ? 400 : 200;
+            byte[] body = (n < 0 ? "n must be >= 0\n" : StatsStore.renderLeaderboard(n)).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        http.createContext("/stats", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            String stats = query != null && query.startsWith("name=")
+                ? StatsStore.playerStats(query.substring("name=".length())) : null;
+            byte[] body = (stats == null ? "unknown player\n" : stats).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(stats == null ? 404 : 200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        http.setExecutor(null);
+        http.start();
+        Log.info("Metrics on http://127.0.0.1:{}/metrics", port);
+    }
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long n) {
+            value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * Histogram log-linear ala HDR: 128 sub-bucket per pangkat dua (galat
+     * relatif < 1%), tanpa lock dan tanpa alokasi saat mencatat.
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 7;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int HALF = SUB_BUCKETS / 2;
+        private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS + 1) * HALF + HALF);
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long value) {
+            if (value < 0) value = 0;
+            counts.incrementAndGet(index(value));
+            total.increment();
+            long m;
+            while (value > (m = max.get()) && !max.compareAndSet(m, value)) {
+                // coba lagi
+            }
+        }
+
+        public long count() {
+            return total.sum();
+        }
+
+        public long max() {
+            return max.get();
+        }
+
+        /** Batas atas bucket yang memuat persentil p (0..100). */
+        public long percentile(double p) {
+            long n = count();
+            if (n == 0) return 0;
+            long target = Math.max(1, (long) Math.ceil(n * p / 100.0));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= target) return Math.min(upperBound(i), max.get());
+            }
+            return max.get();
+        }
+
+        private static int index(long v) {
+            return index(v, SUB_BITS);
+        }
+
+        private static long upperBound(int index) {
+            return upperBound(index, SUB_BITS);
+        }
+
+        /**
+         * Indeks bucket log-linear dengan 2^subBits sub-bucket per pangkat dua;
+         * dipakai juga StatsStore dengan resolusi lebih kasar.
+         */
+        static int index(long v, int subBits) {
+            if (v < (1L << subBits)) return (int) v;
+            int half = 1 << (subBits - 1);
+            int shift = 63 - Long.numberOfLeadingZeros(v) - subBits + 1;
+            return shift * half + (int) (v >>> shift);
+        }
+
+        /** Nilai terbesar yang masuk bucket {@code index} (lihat index(v, subBits)). */
+        static long upperBound(int index, int subBits) {
+            if (index < (1 << subBits)) return index;
+            int half = 1 << (subBits - 1);
+            int shift = (index - half) / half;
+            long sub = index - shift * half;
+            return ((sub + 1) << shift) - 1;
+        }
+    }
+}
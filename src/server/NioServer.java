@@ -0,0 +1,360 @@
+package server;
+
+import common.BinaryCodec;
+import common.Message;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Mode server non-blocking: satu thread acceptor plus beberapa event loop
+ * (Selector) yang masing-masing memegang ribuan SocketChannel. Protokolnya sama
+ * dengan ClientHandler, termasuk negosiasi codec:
+ *
+ * Koneksi selalu dimulai dengan Java serialization (stream ObjectOutputStream),
+ * jadi client Swing lama tidak perlu diubah. Kalau CONNECT membawa
+ * "codec"="bin1", server membalas CONNECT_ACK (masih serialized) dengan "codec"
+ * yang sama, lalu setelah ACK itu kedua arah memakai frame BinaryCodec: server
+ * membaca semua pesan setelah CONNECT sebagai frame biner, dan client baru
+ * mengirimnya setelah menerima ACK. Tanpa "codec" kedua arah tetap Java
+ * serialization.
+ */
+public class NioServer {
+    private static final int READ_BUFFER_SIZE = 4096;
+    // Pesan yang di-encode sekaligus sebelum ditulis ke socket
+    private static final int WRITE_BATCH_BYTES = 64 * 1024;
+
+    private final ServerMain server;
+    private final int port;
+    private final EventLoop[] loops;
+    private int nextLoop = 0;
+
+    public NioServer(ServerMain server, int port, int loopCount) {
+        this.server = server;
+        this.port = port;
+        this.loops = new EventLoop[loopCount];
+    }
+
+    public void start() throws IOException {
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(i);
+            Thread t = new Thread(loops[i], "nio-loop-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        Log.info("Server started on port {} (NIO, {} event loops)", port, loops.length);
+
+        // Accept tetap blocking di thread ini; cuma satu thread, dan channel
+        // yang diterima langsung dilempar ke event loop secara round-robin.
+        while (true) {
+            SocketChannel channel = serverChannel.accept();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            EventLoop loop = loops[nextLoop];
+            nextLoop = (nextLoop + 1) % loops.length;
+            loop.execute(() -> loop.register(channel));
+        }
+    }
+
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final int index;
+
+        EventLoop(int index) throws IOException {
+            this.index = index;
+            this.selector = Selector.open();
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void register(SocketChannel channel) {
+            NioConnection conn = new NioConnection(channel, this);
+            Metrics.CONNECTIONS.increment();
+            Metrics.CONNECTED.incrementAndGet();
+            try {
+                conn.key = channel.register(selector, SelectionKey.OP_READ, conn);
+                // Client membuat ObjectInputStream sebelum mengirim apa pun, dan
+                // constructor-nya menunggu header stream dari server.
+                conn.openStream();
+            } catch (IOException e) {
+                conn.close();
+                return;
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        NioConnection conn = (NioConnection) key.attachment();
+                        if (!key.isValid()) continue;
+                        if (key.isReadable()) conn.onReadable();
+                        if (key.isValid() && key.isWritable()) conn.flush();
+                    }
+                } catch (IOException e) {
+                    Log.warn("Event loop {} error: {}", index, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private final class NioConnection extends Connection {
+        private final SocketChannel channel;
+        private final EventLoop loop;
+        private SelectionKey key;
+
+        private ByteBuffer inbound = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final SerializedFrameScanner scanner = new SerializedFrameScanner();
+        private ObjectInputStream in;
+
+        // Sisi tulis: send() hanya mengantre; encode dan tulis ke socket di event loop
+        private final OutboundQueue outbound;
+        private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        private ObjectOutputStream out;
+        private boolean binaryIn = false;
+        private boolean binaryOut = false;
+        // Batch yang sedang ditulis: potongan milik koneksi ini diselingi frame broadcast bersama
+        private final ArrayList<ByteBuffer> batch = new ArrayList<>();
+        private ByteBuffer[] writing;
+        private int writingFrom;
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private boolean registered = false;
+        private volatile boolean closed = false;
+
+        NioConnection(SocketChannel channel, EventLoop loop) {
+            this.channel = channel;
+            this.loop = loop;
+            this.outbound = new OutboundQueue(this, server.outboundQueueSize());
+            inbound.limit(0);
+        }
+
+        void onReadable() {
+            try {
+                inbound.compact();
+                if (!inbound.hasRemaining()) {
+                    ByteBuffer bigger = ByteBuffer.allocate(inbound.capacity() * 2);
+                    inbound.flip();
+                    bigger.put(inbound);
+                    inbound = bigger;
+                }
+                int n = channel.read(inbound);
+                inbound.flip();
+                if (n < 0) {
+                    close();
+                    return;
+                }
+                int end;
+                while ((end = binaryIn ? BinaryCodec.frameEnd(inbound) : scanner.nextObjectEnd(inbound)) >= 0) {
+                    Message msg;
+                    if (binaryIn) {
+                        msg = BinaryCodec.decode(inbound);
+                    } else {
+                        if (in == null) {
+                            in = new ObjectInputStream(new BufferInput());
+                        }
+                        msg = (Message) in.readObject();
+                    }
+                    if (inbound.position() != end) {
+                        throw new StreamCorruptedException("Frame boundary mismatch");
+                    }
+                    handle(msg);
+                    if (closed) return;
+                }
+            } catch (Exception e) {
+                Log.debug("Client handler error: {}", e.getMessage());
+                close();
+            }
+        }
+
+        private void handle(Message msg) {
+            if (!registered) {
+                if (msg.type != Message.Type.CONNECT) return;
+                registered = true;
+                binaryIn = BinaryCodec.requested(msg);
+                deltaPositions = Boolean.TRUE.equals(msg.get("delta"));
+                needsSnapshot = deltaPositions;
+                playerId = server.connect(this, msg);
+                Message ack = ServerMain.connectAck(this);
+                if (binaryIn) {
+                    ack.put("codec", BinaryCodec.NAME);
+                }
+                send(ack);
+                if (resumed) {
+                    server.resume(this);
+                }
+                if (Heartbeat.requested(msg)) {
+                    server.heartbeat().start(this);
+                }
+            } else if (msg.type == Message.Type.ANSWER) {
+                int qId = (int) msg.get("qId");
+                int answer = (int) msg.get("answer");
+                server.processAnswer(this, qId, answer);
+            } else if (msg.type == Message.Type.PING) {
+                server.heartbeat().onPing(this, msg);
+            } else if (msg.type == Message.Type.RESYNC) {
+                server.resync(this);
+            }
+        }
+
+        /** Dipanggil dari event loop saat registrasi. */
+        void openStream() throws IOException {
+            out = new ObjectOutputStream(encoded);
+            out.flush();
+            flush();
+        }
+
+        /** Tidak pernah blocking; pesan yang belum terkirim bisa digantikan (lihat OutboundQueue). */
+        @Override
+        public void send(Message msg) {
+            if (closed) return;
+            if (!outbound.offer(msg)) {
+                Log.warn("Player {} is not keeping up, disconnecting", playerId);
+                close();
+                return;
+            }
+            if (flushScheduled.compareAndSet(false, true)) {
+                loop.execute(this::flush);
+            }
+        }
+
+        /**
+         * Hanya dipanggil dari event loop. Menulis sisa batch sebelumnya, lalu
+         * meng-encode pesan yang antre (sampai WRITE_BATCH_BYTES) menjadi satu
+         * batch, sampai antrean kosong atau socket penuh. Satu batch ditulis
+         * dengan satu gathering write.
+         */
+        void flush() {
+            flushScheduled.set(false);
+            try {
+                if (closed) return;
+                while (true) {
+                    if (writing == null) {
+                        writing = encodeBatch();
+                        writingFrom = 0;
+                        if (writing == null) break;
+                    }
+                    channel.write(writing, writingFrom, writing.length - writingFrom);
+                    while (writingFrom < writing.length && !writing[writingFrom].hasRemaining()) {
+                        writingFrom++;
+                    }
+                    if (writingFrom < writing.length) break;
+                    writing = null;
+                }
+                key.interestOps(writing == null
+                        ? SelectionKey.OP_READ
+                        : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            } catch (IOException | CancelledKeyException e) {
+                close();
+            }
+        }
+
+        /** null kalau tidak ada yang perlu ditulis. */
+        private ByteBuffer[] encodeBatch() throws IOException {
+            Message msg;
+            int bytes = 0;
+            while (bytes + encoded.size() < WRITE_BATCH_BYTES && (msg = outbound.poll()) != null) {
+                long before = bytes + encoded.size();
+                if (msg.isShared()) {
+                    // Frame bersama tidak disalin: potongan sebelumnya ditutup, frame-nya ikut sebagai view read-only
+                    if (!binaryOut) out.flush();
+                    bytes += takeEncoded();
+                    byte[] frame = binaryOut ? SharedFrames.binary(msg) : SharedFrames.java(msg);
+                    batch.add(ByteBuffer.wrap(frame).asReadOnlyBuffer());
+                    bytes += frame.length;
+                    if (!binaryOut) {
+                        out.reset();
+                        out.flush();
+                    }
+                } else if (binaryOut) {
+                    encoded.write(BinaryCodec.encode(msg));
+                } else {
+                    out.writeObject(msg);
+                    out.flush();
+                    // ACK yang membawa "codec" adalah frame serialized terakhir
+                    if (msg.type == Message.Type.CONNECT_ACK && BinaryCodec.NAME.equals(msg.get("codec"))) {
+                        binaryOut = true;
+                    }
+                }
+                Metrics.bytesSent(msg.type, bytes + encoded.size() - before);
+            }
+            takeEncoded();
+            if (batch.isEmpty()) return null;
+            ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+            batch.clear();
+            return buffers;
+        }
+
+        /** Memindahkan isi encoded ke batch sebagai satu buffer; mengembalikan jumlah byte-nya. */
+        private int takeEncoded() {
+            int size = encoded.size();
+            if (size > 0) {
+                batch.add(ByteBuffer.wrap(encoded.toByteArray()));
+                encoded.reset();
+            }
+            return size;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+            }
+            Metrics.CONNECTED.decrementAndGet();
+            outbound.close();
+            server.heartbeat().stop(this);
+            if (key != null) key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            server.removeClient(this);
+        }
+
+        /** InputStream di atas buffer inbound; scanner menjamin datanya cukup. */
+        private final class BufferInput extends InputStream {
+            @Override
+            public int read() throws IOException {
+                if (!inbound.hasRemaining()) throw new EOFException();
+                return inbound.get() & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) return 0;
+                if (!inbound.hasRemaining()) throw new EOFException();
+                int n = Math.min(len, inbound.remaining());
+                inbound.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return inbound.remaining();
+            }
+        }
+    }
+}
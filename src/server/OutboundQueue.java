@@ -0,0 +1,201 @@
+package server;
+
+import common.Message;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Antrean kirim satu koneksi. send() hanya memasukkan Message ke sini dan
+ * langsung kembali; writer milik koneksi (thread writer atau event loop NIO)
+ * yang meng-encode dan menulis ke socket. Message disimpan belum di-encode
+ * supaya frame yang sudah basi masih bisa dibuang: stream Java serialization
+ * menyimpan handle antar-frame, jadi frame yang sudah di-encode tidak boleh
+ * dilewati.
+ *
+ * Aturan overflow:
+ * - RESULT baru menggantikan POSITIONS dan RESULT broadcast (shared) yang
+ *   masih antre: snapshot sudah memuat semuanya. RESULT per jawaban untuk
+ *   client lama (tidak shared) tidak pernah digantikan, supaya setiap jawaban
+ *   tetap mendapat RESULT sebelum QUESTION berikutnya.
+ * - Kalau antrean penuh, semua POSITIONS dibuang dan koneksi ditandai
+ *   needsSnapshot; client juga minta RESYNC sendiri saat melihat seq bolong.
+ * - Kalau tetap penuh lebih dari SATURATED_MILLIS, atau mencapai dua kali
+ *   kapasitas, offer() mengembalikan false dan koneksi harus diputus.
+ *
+ * Pakai ReentrantLock, bukan synchronized/wait(): di --mode=virtual writer
+ * adalah virtual thread, dan Object.wait() mem-pin carrier thread-nya
+ * (JDK 21-23), sehingga beberapa ratus koneksi diam sudah menghabiskan
+ * carrier. Condition.await() melepas carrier.
+ */
+final class OutboundQueue {
+    private static final long SATURATED_MILLIS = 5000;
+
+    // Angka gabungan semua koneksi, untuk log statistik server
+    private static final AtomicLong totalDepth = new AtomicLong();
+    private static final AtomicLong peakDepth = new AtomicLong();
+    private static final AtomicLong droppedFrames = new AtomicLong();
+    private static final AtomicLong saturatedDisconnects = new AtomicLong();
+
+    private final Connection owner;
+    private final int capacity;
+    private final ArrayDeque<Message> queue = new ArrayDeque<>();
+    private int supersedable = 0;
+    private long saturatedSince = 0;
+    private boolean closed = false;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    OutboundQueue(Connection owner, int capacity) {
+        this.owner = owner;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /** @return false kalau client terus jenuh dan harus diputus */
+    boolean offer(Message msg) {
+        lock.lock();
+        try {
+            return offerLocked(msg);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean offerLocked(Message msg) {
+        if (closed) return true;
+
+        if (msg.type == Message.Type.RESULT && supersedable > 0) {
+            drop(true);
+        }
+        if (queue.size() >= capacity && supersedable > 0) {
+            drop(false);
+        }
+        if (queue.size() >= capacity) {
+            if (msg.type == Message.Type.POSITIONS) {
+                droppedFrames.incrementAndGet();
+                owner.needsSnapshot = true;
+                return true;
+            }
+            long now = System.currentTimeMillis();
+            if (saturatedSince == 0) saturatedSince = now;
+            if (queue.size() >= 2 * capacity || now - saturatedSince > SATURATED_MILLIS) {
+                saturatedDisconnects.incrementAndGet();
+                return false;
+            }
+        }
+
+        queue.add(msg);
+        if (isSupersedable(msg)) supersedable++;
+        totalDepth.incrementAndGet();
+        if (queue.size() > peakDepth.get()) peakDepth.accumulateAndGet(queue.size(), Math::max);
+        notEmpty.signal();
+        return true;
+    }
+
+    /** Tidak blocking; null kalau kosong. */
+    Message poll() {
+        lock.lock();
+        try {
+            return pollLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Message pollLocked() {
+        Message msg = queue.poll();
+        if (msg != null) taken(msg);
+        return msg;
+    }
+
+    /** Blocking sampai ada Message; null setelah close(). */
+    Message take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+            return pollLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        lock.lock();
+        try {
+            return queue.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            totalDepth.addAndGet(-queue.size());
+            queue.clear();
+            supersedable = 0;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void taken(Message msg) {
+        totalDepth.decrementAndGet();
+        if (isSupersedable(msg)) supersedable--;
+        if (queue.size() < capacity) saturatedSince = 0;
+    }
+
+    /** Buang POSITIONS yang antre, plus RESULT broadcast kalau {@code results}. */
+    private void drop(boolean results) {
+        int removed = 0;
+        boolean positions = false;
+        Iterator<Message> it = queue.iterator();
+        while (it.hasNext()) {
+            Message m = it.next();
+            if (m.type == Message.Type.POSITIONS || (results && m.type == Message.Type.RESULT && m.isShared())) {
+                positions |= m.type == Message.Type.POSITIONS;
+                it.remove();
+                removed++;
+            }
+        }
+        supersedable -= removed;
+        totalDepth.addAndGet(-removed);
+        droppedFrames.addAndGet(removed);
+        // Tanpa RESULT pengganti, client delta butuh snapshot untuk menutup celah seq
+        if (positions && !results) owner.needsSnapshot = true;
+    }
+
+    private static boolean isSupersedable(Message msg) {
+        return (msg.type == Message.Type.RESULT && msg.isShared()) || msg.type == Message.Type.POSITIONS;
+    }
+
+    static void registerMetrics() {
+        Metrics.gauge("outbound_queue_depth", totalDepth::get);
+        Metrics.gauge("outbound_queue_peak_depth", peakDepth::get);
+        Metrics.gauge("outbound_dropped_frames_total", droppedFrames::get);
+        Metrics.gauge("outbound_saturated_disconnects_total", saturatedDisconnects::get);
+    }
+
+    /** Ringkasan semua antrean: total isi, isi tertinggi satu koneksi, frame dibuang, koneksi diputus. */
+    static String stats() {
+        return "depth=" + totalDepth.get() + " peak=" + peakDepth.get()
+            + " dropped=" + droppedFrames.get() + " saturatedDisconnects=" + saturatedDisconnects.get();
+    }
+}
@@ -7,7 +7,7 @@ import java.net.Socket;
 import java.util.Map;
 import java.util.function.BiConsumer;
 
-public class PlayerHandler extends Thread {
+public class PlayerHandler implements Runnable {
     private final Socket socket;
     private final GameManager manager;
     private ObjectOutputStream out;
@@ -22,12 +22,17 @@ public class PlayerHandler extends Thread {
         this.playerId = playerId;
     }
 
+    /** Menjalankan handler lewat ServerThreads (platform atau virtual thread). */
+    public void start() {
+        ServerThreads.startHandler(this, "player-handler-" + playerId);
+    }
+
     public void send(Message m) {
         try {
             out.writeObject(m);
             out.flush();
         } catch (IOException e) {
-            System.err.println("Send fail to player " + playerId + ": " + e.getMessage());
+            Log.warn("Send fail to player {}: {}", playerId, e.getMessage());
         }
     }
 
@@ -36,7 +41,7 @@ public class PlayerHandler extends Thread {
         try {
             out = new ObjectOutputStream(socket.getOutputStream());
             in  = new ObjectInputStream(socket.getInputStream());
-            System.out.println("PlayerHandler " + playerId + " streams ready.");
+            Log.debug("PlayerHandler {} streams ready.", playerId);
 
             // expect CONNECT
             Message m = (Message) in.readObject();
@@ -47,7 +52,7 @@ public class PlayerHandler extends Thread {
             }
             playerName = (String) m.get("name");
             operation = (String) m.get("operation");
-            System.out.println("Player " + playerId + " connected: " + playerName + " op=" + operation);
+            Log.info("Player {} connected: {} op={}", playerId, playerName, operation);
 
             send(new Message(Message.Type.CONNECT_ACK).put("playerId", playerId));
             manager.playerReady(playerId, this);
@@ -65,9 +70,9 @@ public class PlayerHandler extends Thread {
             }
 
         } catch (EOFException eof) {
-            System.out.println("Player " + playerId + " disconnected.");
+            Log.info("Player {} disconnected.", playerId);
         } catch (Exception e) {
-            System.err.println("PlayerHandler error: " + e.getMessage());
+            Log.error("PlayerHandler error: {}", e.getMessage());
             e.printStackTrace();
         } finally {
             manager.playerDisconnected(playerId);
@@ -0,0 +1,300 @@
+package server;
+
+import common.Message;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * State semua pemain di satu room dalam bentuk array primitif yang diindeks
+ * langsung dengan playerId (1..capacity), menggantikan map dan objek per pemain.
+ *
+ * Soal aktif disimpan sebagai satu long: id soal di 32 bit atas dan jawaban
+ * benar (int) di 32 bit bawah, sehingga klaim soal + cek jawaban cukup satu CAS
+ * dan satu perbandingan int. Update state di jalur jawaban tidak mengalokasikan
+ * apa pun (PlayerTableBenchmark, -prof gc); yang dialokasikan per jawaban hanya
+ * pesan QUESTION (dan RESULT untuk client lama) ke client-nya.
+ *
+ * add/remove/clear dipanggil di bawah lock room; method lainnya aman dipanggil
+ * dari thread mana pun.
+ *
+ * Pemain yang koneksinya putus (atau dipulihkan dari Snapshot) menempati slot
+ * dengan koneksi DETACHED sampai client-nya connect lagi dengan token resume
+ * slot itu: ia tetap terlihat di posisi dan nama, tetapi semua pesan untuknya
+ * dibuang.
+ */
+final class PlayerTable {
+    /** Pengganti koneksi untuk pemain yang state-nya disimpan tanpa client. */
+    static final Connection DETACHED = new Connection() {
+        @Override
+        public void send(Message msg) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+    private static final SecureRandom TOKENS = new SecureRandom();
+
+    private final int capacity;
+    private final AtomicReferenceArray<Connection> connections;
+    private final String[] names;
+    // Operasi soal pilihan pemain (QuestionPool.ADD..DIVIDE); ditulis bersama nama
+    private final int[] operations;
+    private final AtomicLongArray questions;
+    private final AtomicIntegerArray positions;
+    private final AtomicIntegerArray dirty;
+    // Batas waktu soal aktif (System.nanoTime), 0 = tanpa batas
+    private final AtomicLongArray deadlines;
+    // Token resume slot; acak per pemain, 0 = slot kosong
+    private final AtomicLongArray tokens;
+    // Statistik balapan ini untuk StatsStore (hanya diisi kalau --stats aktif):
+    // waktu soal aktif dikirim, jumlah jawaban, jawaban benar, histogram latensi
+    private final AtomicLongArray asked;
+    private final AtomicIntegerArray answered;
+    private final AtomicIntegerArray correct;
+    private final AtomicIntegerArray latency;
+    // State Difficulty per pemain (tingkat soal, EWMA akurasi dan waktu jawab)
+    private final AtomicLongArray difficulty;
+
+    PlayerTable(int capacity) {
+        this.capacity = capacity;
+        // Slot 0 tidak dipakai supaya playerId bisa langsung jadi indeks
+        connections = new AtomicReferenceArray<>(capacity + 1);
+        names = new String[capacity + 1];
+        operations = new int[capacity + 1];
+        questions = new AtomicLongArray(capacity + 1);
+        positions = new AtomicIntegerArray(capacity + 1);
+        dirty = new AtomicIntegerArray(capacity + 1);
+        deadlines = new AtomicLongArray(capacity + 1);
+        tokens = new AtomicLongArray(capacity + 1);
+        asked = new AtomicLongArray(capacity + 1);
+        answered = new AtomicIntegerArray(capacity + 1);
+        correct = new AtomicIntegerArray(capacity + 1);
+        latency = new AtomicIntegerArray((capacity + 1) * StatsStore.LATENCY_BUCKETS);
+        difficulty = new AtomicLongArray(capacity + 1);
+    }
+
+    static long pack(int questionId, int answer) {
+        return ((long) questionId << 32) | (answer & 0xFFFFFFFFL);
+    }
+
+    static int questionId(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    static int answer(long packed) {
+        return (int) packed;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /** Menempati slot kosong terkecil; mengembalikan playerId atau -1 kalau penuh. */
+    int add(String name, int operation, Connection connection) {
+        for (int id = 1; id <= capacity; id++) {
+            if (connections.get(id) == null) {
+                names[id] = name;
+                operations[id] = operation;
+                questions.set(id, 0L);
+                positions.set(id, 0);
+                dirty.set(id, 1);
+                tokens.set(id, newToken());
+                resetStats(id);
+                connections.set(id, connection);
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    private static long newToken() {
+        long token;
+        do {
+            token = TOKENS.nextLong();
+        } while (token == 0);
+        return token;
+    }
+
+    /** Mengisi slot dari snapshot tanpa koneksi; soal aktif tanpa batas waktu sampai reattach. */
+    void restore(int id, String name, int operation, int position, long question, long token) {
+        names[id] = name;
+        operations[id] = operation;
+        tokens.set(id, token);
+        questions.set(id, question);
+        positions.set(id, position);
+        dirty.set(id, 1);
+        deadlines.set(id, 0L);
+        resetStats(id);
+        connections.set(id, DETACHED);
+    }
+
+    boolean isDetached(int id) {
+        return id >= 1 && id <= capacity && connections.get(id) == DETACHED;
+    }
+
+    /** Koneksi pemain putus: state-nya tetap, soal aktif tanpa batas waktu sampai reattach. */
+    void detach(int id) {
+        deadlines.set(id, 0L);
+        connections.set(id, DETACHED);
+    }
+
+    /** Memasang koneksi baru ke slot pemain yang sudah ada (reattach). */
+    void attach(int id, Connection connection) {
+        connections.set(id, connection);
+    }
+
+    long token(int id) {
+        return tokens.get(id);
+    }
+
+    void remove(int id) {
+        if (id < 1 || id > capacity) return;
+        connections.set(id, null);
+        names[id] = null;
+        questions.set(id, 0L);
+        positions.set(id, 0);
+        dirty.set(id, 0);
+        deadlines.set(id, 0L);
+        tokens.set(id, 0L);
+    }
+
+    void clear() {
+        for (int id = 1; id <= capacity; id++) {
+            remove(id);
+        }
+    }
+
+    boolean isActive(int id) {
+        return id >= 1 && id <= capacity && connections.get(id) != null;
+    }
+
+    Connection connection(int id) {
+        return connections.get(id);
+    }
+
+    String name(int id) {
+        return names[id];
+    }
+
+    int operation(int id) {
+        return operations[id];
+    }
+
+    long question(int id) {
+        return questions.get(id);
+    }
+
+    /** Mengganti soal aktif; gagal kalau soal sudah diklaim thread lain. */
+    boolean claimQuestion(int id, long expected, long next) {
+        return questions.compareAndSet(id, expected, next);
+    }
+
+    int position(int id) {
+        return positions.get(id);
+    }
+
+    /**
+     * Batas waktu soal berikutnya. Ditulis sebelum claimQuestion supaya thread
+     * yang melihat soal baru juga melihat batas waktunya.
+     */
+    void setDeadline(int id, long nanos) {
+        deadlines.set(id, nanos);
+    }
+
+    long deadline(int id) {
+        return deadlines.get(id);
+    }
+
+    /**
+     * Maju {@code step} (mundur kalau negatif) di antara 0 dan {@code limit};
+     * mengembalikan posisi baru.
+     */
+    int advance(int id, int step, int limit) {
+        while (true) {
+            int current = positions.get(id);
+            int next = Math.max(0, Math.min(current + step, limit));
+            if (positions.compareAndSet(id, current, next)) {
+                dirty.set(id, 1);
+                return next;
+            }
+        }
+    }
+
+    boolean isDirty(int id) {
+        return dirty.get(id) != 0;
+    }
+
+    /** Mengambil dan mereset flag dirty; update yang menyusul akan menandainya lagi. */
+    boolean takeDirty(int id) {
+        return dirty.getAndSet(id, 0) != 0;
+    }
+
+    /** Soal baru dikirim ke pemain; titik awal latensi jawabannya. */
+    void setAsked(int id, long nanos) {
+        asked.set(id, nanos);
+    }
+
+    /** Waktu soal aktif dikirim (System.nanoTime), 0 kalau tidak dicatat. */
+    long asked(int id) {
+        return asked.get(id);
+    }
+
+    long difficulty(int id) {
+        return difficulty.get(id);
+    }
+
+    /** Ditulis setelah claimQuestion berhasil; jawaban satu pemain tidak pernah diproses bersamaan. */
+    void setDifficulty(int id, long state) {
+        difficulty.set(id, state);
+    }
+
+    /** Mencatat satu jawaban untuk statistik balapan; tanpa alokasi. */
+    void recordAnswer(int id, boolean isCorrect, long nowNanos) {
+        answered.incrementAndGet(id);
+        if (isCorrect) correct.incrementAndGet(id);
+        long since = asked.get(id);
+        if (since != 0L) {
+            int bucket = StatsStore.latencyBucket(TimeUnit.NANOSECONDS.toMillis(nowNanos - since));
+            latency.incrementAndGet(id * StatsStore.LATENCY_BUCKETS + bucket);
+        }
+    }
+
+    /** Soal yang habis waktunya dihitung sebagai jawaban salah, tanpa latensi. */
+    void recordTimeout(int id) {
+        answered.incrementAndGet(id);
+    }
+
+    int answered(int id) {
+        return answered.get(id);
+    }
+
+    int correct(int id) {
+        return correct.get(id);
+    }
+
+    /** Salinan histogram latensi pemain di balapan ini (ms, bucket StatsStore). */
+    int[] latencyCounts(int id) {
+        int[] counts = new int[StatsStore.LATENCY_BUCKETS];
+        int base = id * StatsStore.LATENCY_BUCKETS;
+        for (int b = 0; b < counts.length; b++) {
+            counts[b] = latency.get(base + b);
+        }
+        return counts;
+    }
+
+    private void resetStats(int id) {
+        difficulty.set(id, Difficulty.INITIAL);
+        asked.set(id, 0L);
+        answered.set(id, 0);
+        correct.set(id, 0);
+        int base = id * StatsStore.LATENCY_BUCKETS;
+        for (int b = 0; b < StatsStore.LATENCY_BUCKETS; b++) {
+            latency.set(base + b, 0);
+        }
+    }
+}
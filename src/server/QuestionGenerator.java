@@ -1,6 +1,7 @@
 package server;
 
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class QuestionGenerator {
     private static final Random rnd = new Random();
@@ -17,8 +18,8 @@ public class QuestionGenerator {
         }
     }
 
-    private static int nextId = 1;
-    private static synchronized int newId() { return nextId++; }
+    private static final AtomicInteger nextId = new AtomicInteger(1);
+    private static int newId() { return nextId.getAndIncrement(); }
 
     public static Q make(String op) {
         int a, b;
@@ -0,0 +1,110 @@
+package server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Semua soal yang mungkin per operasi dan tingkat kesulitan, dibuat sekali
+ * saat server start.
+ *
+ * Setiap kombinasi punya tabel berisi setiap pasangan operand yang valid
+ * (pengurangan tanpa hasil negatif, pembagian yang hasilnya bulat), dengan teks
+ * yang sudah di-render termasuk bentuk UTF-8 untuk BinaryCodec. take() cukup
+ * mengambil satu indeks acak dari ThreadLocalRandom: waktu konstan, tanpa
+ * cabang per operasi, tanpa alokasi, dan tanpa cursor bersama yang
+ * diperebutkan antar thread. Distribusinya sama dengan mengacak operand
+ * seperti QuestionGenerator: seragam di atas semua pasangan yang valid.
+ */
+public final class QuestionPool {
+    public static final String[] OPERATIONS = { "+", "-", "*", "/" };
+    public static final int ADD = 0;
+    public static final int SUBTRACT = 1;
+    public static final int MULTIPLY = 2;
+    public static final int DIVIDE = 3;
+
+    // Rentang operand per tingkat: EASY sama dengan QuestionGenerator (0..9),
+    // NORMAL sama dengan soal balapan selama ini (1..20); HARD dan EXPERT untuk
+    // pemain yang naik tingkat lewat Difficulty
+    public static final int EASY = 0;
+    public static final int NORMAL = 1;
+    public static final int HARD = 2;
+    public static final int EXPERT = 3;
+    private static final int[] MIN_OPERAND = { 0, 1, 5, 10 };
+    private static final int[] MAX_OPERAND = { 9, 20, 50, 99 };
+
+    /** Soal jadi; immutable sehingga bisa dibagi ke banyak pemain sekaligus. */
+    public static final class Entry {
+        public final String text;
+        public final byte[] utf8;
+        public final int answer;
+
+        Entry(String text, int answer) {
+            this.text = text;
+            this.utf8 = text.getBytes(StandardCharsets.UTF_8);
+            this.answer = answer;
+        }
+    }
+
+    private final Entry[][][] tables;
+
+    public QuestionPool() {
+        tables = new Entry[OPERATIONS.length][MIN_OPERAND.length][];
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            for (int level = 0; level < MIN_OPERAND.length; level++) {
+                tables[op][level] = table(op, MIN_OPERAND[level], MAX_OPERAND[level]);
+            }
+        }
+    }
+
+    public Entry take(int operation, int difficulty) {
+        Entry[] table = tables[operation][difficulty];
+        return table[ThreadLocalRandom.current().nextInt(table.length)];
+    }
+
+    /** Jumlah soal berbeda untuk satu operasi dan tingkat. */
+    public int size(int operation, int difficulty) {
+        return tables[operation][difficulty].length;
+    }
+
+    /** Indeks operasi dari simbol di CONNECT ("+", "-", "*", "/"); selain itu penjumlahan. */
+    public static int operationIndex(String op) {
+        if (op != null) {
+            for (int i = 0; i < OPERATIONS.length; i++) {
+                if (OPERATIONS[i].equals(op)) return i;
+            }
+        }
+        return ADD;
+    }
+
+    public static int difficultyLevels() {
+        return MIN_OPERAND.length;
+    }
+
+    /** Setiap soal valid dengan kedua operand di min..max. */
+    private static Entry[] table(int operation, int min, int max) {
+        List<Entry> entries = new ArrayList<>((max - min + 1) * (max - min + 1));
+        for (int a = min; a <= max; a++) {
+            for (int b = min; b <= max; b++) {
+                switch (operation) {
+                    case SUBTRACT:
+                        // hasil non-negative supaya sederhana
+                        if (a >= b) entries.add(new Entry(a + " - " + b, a - b));
+                        break;
+                    case MULTIPLY:
+                        entries.add(new Entry(a + " × " + b, a * b));
+                        break;
+                    case DIVIDE:
+                        // pembagi tidak boleh 0, hasil selalu bulat: (a*b) ÷ b = a
+                        if (b >= 1) entries.add(new Entry((a * b) + " ÷ " + b, a));
+                        break;
+                    default:
+                        entries.add(new Entry(a + " + " + b, a + b));
+                        break;
+                }
+            }
+        }
+        return entries.toArray(new Entry[0]);
+    }
+}
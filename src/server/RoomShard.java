@@ -0,0 +1,65 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sekelompok room yang dilayani satu thread: timer semua room di shard ini
+ * (countdown, jeda soal pertama, reset, tick broadcast) dijadwalkan di
+ * TimerWheel bersama dan dijalankan di thread shard, dan daftar room-nya punya
+ * lock sendiri.
+ */
+class RoomShard {
+    private static final AtomicInteger nextRoomId = new AtomicInteger(1);
+
+    final int index;
+    private final int maxPlayersPerRoom;
+    private final int broadcastHz;
+    private final long questionMillis;
+    private final int timeoutPenalty;
+    private final long resumeMillis;
+    private final boolean adaptiveDifficulty;
+    private final TimerWheel timers;
+    private final ExecutorService executor;
+    private final QuestionPool questions;
+    private final List<GameRoom> rooms = new ArrayList<>();
+
+    RoomShard(int index, int maxPlayersPerRoom, int broadcastHz, QuestionPool questions, TimerWheel timers,
+              long questionMillis, int timeoutPenalty, long resumeMillis, boolean adaptiveDifficulty) {
+        this.index = index;
+        this.questions = questions;
+        this.maxPlayersPerRoom = maxPlayersPerRoom;
+        this.broadcastHz = broadcastHz;
+        this.questionMillis = questionMillis;
+        this.timeoutPenalty = timeoutPenalty;
+        this.resumeMillis = resumeMillis;
+        this.adaptiveDifficulty = adaptiveDifficulty;
+        this.timers = timers;
+        this.executor = ServerThreads.newExecutor("room-shard-" + index);
+    }
+
+    /** Room kosong yang bisa diisi: pakai ulang room yang sudah di-reset, atau buat baru. */
+    synchronized GameRoom openRoom() {
+        for (GameRoom room : rooms) {
+            if (room.isIdle()) {
+                return room;
+            }
+        }
+        GameRoom room = new GameRoom(nextRoomId.getAndIncrement(), maxPlayersPerRoom, timers, executor, broadcastHz, questions,
+            questionMillis, timeoutPenalty, resumeMillis, adaptiveDifficulty);
+        rooms.add(room);
+        Log.info("Shard {}: opened room {} ({} rooms)", index, room.id, rooms.size());
+        return room;
+    }
+
+    /** Room dengan id dari snapshot; id baru dari openRoom dilanjutkan setelahnya. */
+    synchronized GameRoom restoreRoom(int id) {
+        nextRoomId.accumulateAndGet(id + 1, Math::max);
+        GameRoom room = new GameRoom(id, maxPlayersPerRoom, timers, executor, broadcastHz, questions,
+            questionMillis, timeoutPenalty, resumeMillis, adaptiveDifficulty);
+        rooms.add(room);
+        return room;
+    }
+}
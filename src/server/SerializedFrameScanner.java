@@ -0,0 +1,265 @@
+package server;
+
+import java.io.ObjectStreamConstants;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Menemukan batas objek di dalam stream ObjectOutputStream tanpa men-deserialize.
+ *
+ * Client lama mengirim Message lewat satu ObjectOutputStream yang panjang, tanpa
+ * framing. Mode NIO tidak boleh memanggil readObject() sebelum satu objek utuh
+ * sudah ada di buffer (kalau tidak, event loop akan ke-block atau state
+ * ObjectInputStream rusak). Scanner ini berjalan di atas grammar serialization
+ * dan menyimpan tabel handle sendiri, karena objek berikutnya boleh mereferensi
+ * class descriptor dari objek sebelumnya.
+ */
+class SerializedFrameScanner implements ObjectStreamConstants {
+    /** Dilempar saat data di buffer belum cukup; tanpa stack trace supaya murah. */
+    private static final RuntimeException UNDERFLOW = new RuntimeException("underflow", null, false, false) {};
+
+    private static final class Desc {
+        int flags;
+        char arrayComponent;
+        char[] fieldTypes;
+        Desc superDesc;
+    }
+
+    private List<Object> handles = new ArrayList<>();
+    private boolean headerSeen = false;
+
+    private ByteBuffer buf;
+    private int pos;
+    private int limit;
+
+    /**
+     * Mengembalikan posisi akhir (exclusive) dari objek lengkap berikutnya yang
+     * dimulai di {@code buf.position()}, atau -1 kalau objeknya belum lengkap.
+     * Header stream (AC ED 00 05) ikut dihitung sebagai bagian dari objek pertama.
+     */
+    int nextObjectEnd(ByteBuffer buffer) throws StreamCorruptedException {
+        buf = buffer;
+        pos = buffer.position();
+        limit = buffer.limit();
+
+        int savedSize = handles.size();
+        List<Object> savedHandles = handles;
+        try {
+            if (!headerSeen) {
+                if (u2() != (STREAM_MAGIC & 0xFFFF) || u2() != STREAM_VERSION) {
+                    throw new StreamCorruptedException("Bad stream header");
+                }
+            }
+            int tc;
+            while ((tc = u1()) == TC_RESET) {
+                handles = new ArrayList<>();
+            }
+            if (tc == TC_BLOCKDATA || tc == TC_BLOCKDATALONG || tc == TC_ENDBLOCKDATA) {
+                throw new StreamCorruptedException("Unexpected block data at top level");
+            }
+            content(tc);
+            headerSeen = true;
+            return pos;
+        } catch (RuntimeException e) {
+            if (e != UNDERFLOW) throw e;
+            handles = savedHandles;
+            while (handles.size() > savedSize) {
+                handles.remove(handles.size() - 1);
+            }
+            return -1;
+        } finally {
+            buf = null;
+        }
+    }
+
+    private Object content(int tc) throws StreamCorruptedException {
+        switch (tc) {
+            case TC_NULL:
+                return null;
+            case TC_REFERENCE:
+                return reference();
+            case TC_CLASSDESC:
+            case TC_PROXYCLASSDESC:
+                return classDesc(tc);
+            case TC_OBJECT: {
+                Desc desc = classDesc(u1());
+                handles.add(null);
+                classData(desc);
+                return null;
+            }
+            case TC_CLASS:
+                classDesc(u1());
+                handles.add(null);
+                return null;
+            case TC_ARRAY: {
+                Desc desc = classDesc(u1());
+                handles.add(null);
+                array(desc);
+                return null;
+            }
+            case TC_STRING:
+                handles.add(null);
+                skip(u2());
+                return null;
+            case TC_LONGSTRING:
+                handles.add(null);
+                skip(u8());
+                return null;
+            case TC_ENUM:
+                classDesc(u1());
+                handles.add(null);
+                content(u1());
+                return null;
+            default:
+                throw new StreamCorruptedException("Unsupported type code 0x" + Integer.toHexString(tc));
+        }
+    }
+
+    private Object reference() throws StreamCorruptedException {
+        int index = u4() - baseWireHandle;
+        if (index < 0 || index >= handles.size()) {
+            throw new StreamCorruptedException("Invalid handle " + index);
+        }
+        return handles.get(index);
+    }
+
+    private Desc classDesc(int tc) throws StreamCorruptedException {
+        switch (tc) {
+            case TC_NULL:
+                return null;
+            case TC_REFERENCE: {
+                Object o = reference();
+                if (!(o instanceof Desc)) throw new StreamCorruptedException("Reference is not a class descriptor");
+                return (Desc) o;
+            }
+            case TC_CLASSDESC: {
+                int nameLength = u2();
+                need(nameLength);
+                Desc desc = new Desc();
+                if (nameLength > 1 && buf.get(pos) == '[') {
+                    desc.arrayComponent = (char) buf.get(pos + 1);
+                }
+                skip(nameLength);
+                skip(8);             // serialVersionUID
+                handles.add(desc);
+                desc.flags = u1();
+                int count = u2();
+                desc.fieldTypes = new char[count];
+                for (int i = 0; i < count; i++) {
+                    char type = (char) u1();
+                    desc.fieldTypes[i] = type;
+                    skip(u2());      // field name
+                    if (type == 'L' || type == '[') {
+                        content(u1()); // class name string
+                    }
+                }
+                annotation();
+                desc.superDesc = classDesc(u1());
+                return desc;
+            }
+            case TC_PROXYCLASSDESC: {
+                Desc desc = new Desc();
+                handles.add(desc);
+                desc.flags = SC_SERIALIZABLE;
+                desc.fieldTypes = new char[0];
+                int count = u4();
+                for (int i = 0; i < count; i++) skip(u2());
+                annotation();
+                desc.superDesc = classDesc(u1());
+                return desc;
+            }
+            default:
+                throw new StreamCorruptedException("Expected class descriptor, got 0x" + Integer.toHexString(tc));
+        }
+    }
+
+    private void classData(Desc desc) throws StreamCorruptedException {
+        if (desc == null) return;
+        classData(desc.superDesc);
+        if ((desc.flags & SC_EXTERNALIZABLE) != 0) {
+            if ((desc.flags & SC_BLOCK_DATA) == 0) {
+                throw new StreamCorruptedException("Protocol 1 externalizable data is not supported");
+            }
+            annotation();
+            return;
+        }
+        if ((desc.flags & SC_SERIALIZABLE) != 0) {
+            for (char type : desc.fieldTypes) {
+                value(type);
+            }
+            if ((desc.flags & SC_WRITE_METHOD) != 0) {
+                annotation();
+            }
+        }
+    }
+
+    private void array(Desc desc) throws StreamCorruptedException {
+        int size = u4();
+        if (desc == null || size < 0) throw new StreamCorruptedException("Bad array");
+        for (int i = 0; i < size; i++) {
+            value(desc.arrayComponent);
+        }
+    }
+
+    private void value(char type) throws StreamCorruptedException {
+        switch (type) {
+            case 'B': case 'Z': skip(1); break;
+            case 'C': case 'S': skip(2); break;
+            case 'I': case 'F': skip(4); break;
+            case 'J': case 'D': skip(8); break;
+            case 'L': case '[': content(u1()); break;
+            default: throw new StreamCorruptedException("Bad field type " + type);
+        }
+    }
+
+    private void annotation() throws StreamCorruptedException {
+        while (true) {
+            int tc = u1();
+            if (tc == TC_ENDBLOCKDATA) return;
+            if (tc == TC_BLOCKDATA) {
+                skip(u1());
+            } else if (tc == TC_BLOCKDATALONG) {
+                skip(u4());
+            } else {
+                content(tc);
+            }
+        }
+    }
+
+    private void need(long n) {
+        if (limit - pos < n) throw UNDERFLOW;
+    }
+
+    private void skip(long n) {
+        need(n);
+        pos += (int) n;
+    }
+
+    private int u1() {
+        need(1);
+        return buf.get(pos++) & 0xFF;
+    }
+
+    private int u2() {
+        need(2);
+        int v = buf.getShort(pos) & 0xFFFF;
+        pos += 2;
+        return v;
+    }
+
+    private int u4() {
+        need(4);
+        int v = buf.getInt(pos);
+        pos += 4;
+        return v;
+    }
+
+    private long u8() {
+        need(8);
+        long v = buf.getLong(pos);
+        pos += 8;
+        return v;
+    }
+}
@@ -1,314 +1,440 @@
 package server;
 
+import common.BinaryCodec;
 import common.Message;
 import java.io.*;
 import java.net.*;
-import java.util.*;
-import java.util.concurrent.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Lobby server: menerima koneksi dan membagikan pemain ke room lewat
+ * matchmaking. Satu proses bisa menjalankan banyak balapan sekaligus; logika
+ * satu balapan ada di GameRoom.
+ */
 public class ServerMain {
-    private static final int MIN_PLAYERS = 2;
-    private static final int COUNTDOWN_SECONDS = 10;
-    private static final int FINISH_LINE = 100;
+    private static final int DEFAULT_PORT = 5000;
+    private static final int DEFAULT_BROADCAST_HZ = 20;
+    private static final int DEFAULT_ROOM_SIZE = 8;
+    private static final int DEFAULT_OUTBOUND_QUEUE = 256;
+    private static final int STATS_LOG_SECONDS = 10;
+    // 5 ms x 512 bucket = satu putaran 2,56 detik; timer yang lebih jauh menunggu beberapa putaran
+    private static final int TIMER_TICK_MILLIS = 5;
+    private static final int TIMER_WHEEL_SIZE = 512;
+    private static final int DEFAULT_HEARTBEAT_SECONDS = 5;
+    private static final int DEFAULT_HEARTBEAT_MISSES = 3;
+    private static final int GAME_LOOP_RING = 1 << 16;
+    private static final int GAME_LOOP_MAX_BATCH = 1024;
+    private static final int DEFAULT_SNAPSHOT_MILLIS = 1000;
+    private static final int DEFAULT_RESUME_SECONDS = 30;
+    // Berapa lama pemain hasil restore menunggu client-nya connect lagi
+    private static final int RESTORE_GRACE_SECONDS = 30;
     
     private ServerSocket serverSocket;
-    private List<ClientHandler> clients = new CopyOnWriteArrayList<>();
-    public Map<Integer, Integer> playerPositions = new ConcurrentHashMap<>();
-    public Map<Integer, String> playerNames = new ConcurrentHashMap<>();
-    private Map<Integer, Integer> playerQuestionId = new ConcurrentHashMap<>();
-    private Map<Integer, String> playerCorrectAnswer = new ConcurrentHashMap<>();
-
-    private int nextPlayerId = 1;
-    private boolean countdownStarted = false;
-    private boolean gameStarted = false;
-    private boolean gameOver = false;
-    private Timer countdownTimer;
+    private final RoomShard[] shards;
+    /** Semua room menurut id, untuk reattach dan Snapshot. */
+    private final Map<Integer, GameRoom> rooms = new ConcurrentHashMap<>();
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private final Object matchmakingLock = new Object();
+    private volatile GameRoom fillingRoom;
+    private final int outboundQueueSize;
+    /** Null untuk --engine=inline: jawaban diterapkan langsung di thread koneksi. */
+    private final GameLoop gameLoop;
+    /** Satu wheel untuk semua timer server: room, soal dan koneksi. */
+    final TimerWheel timers = new TimerWheel("timer-wheel", TIMER_TICK_MILLIS, TIMER_WHEEL_SIZE);
+    private final Heartbeat heartbeat = new Heartbeat(this, timers,
+        TimeUnit.SECONDS.toMillis(DEFAULT_HEARTBEAT_SECONDS), DEFAULT_HEARTBEAT_MISSES);
+
+    public ServerMain() {
+        this(DEFAULT_BROADCAST_HZ, Runtime.getRuntime().availableProcessors(), DEFAULT_ROOM_SIZE, DEFAULT_OUTBOUND_QUEUE,
+            0, 0, DEFAULT_RESUME_SECONDS, false, false);
+    }
+
+    /**
+     * @param broadcastHz laju broadcast posisi; 0 = broadcast langsung di setiap jawaban
+     * @param shardCount  jumlah shard room (masing-masing satu thread)
+     * @param roomSize    jumlah pemain maksimal per room
+     * @param outboundQueueSize jumlah pesan yang boleh antre per koneksi sebelum frame dibuang
+     * @param questionSeconds batas waktu menjawab satu soal; 0 = tanpa batas
+     * @param timeoutPenalty  langkah mundur kalau soal kedaluwarsa
+     * @param resumeSeconds   berapa lama slot pemain yang putus ditahan untuk reattach; 0 = langsung keluar
+     * @param adaptiveDifficulty true = tingkat soal per pemain mengikuti akurasi dan waktu jawabnya
+     * @param gameLoop        true = jawaban diterapkan satu thread GameLoop dalam batch, dan
+     *                        posisi dibroadcast per batch (broadcastHz diabaikan)
+     */
+    public ServerMain(int broadcastHz, int shardCount, int roomSize, int outboundQueueSize,
+                      int questionSeconds, int timeoutPenalty, int resumeSeconds, boolean adaptiveDifficulty,
+                      boolean gameLoop) {
+        this.outboundQueueSize = outboundQueueSize;
+        this.gameLoop = gameLoop ? new GameLoop(GAME_LOOP_RING, GAME_LOOP_MAX_BATCH) : null;
+        if (gameLoop) broadcastHz = BroadcastScheduler.BATCHED;
+        Metrics.gauge("timers_pending", timers::pending);
+        QuestionPool questions = new QuestionPool();
+        shards = new RoomShard[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new RoomShard(i, Math.max(GameRoom.MIN_PLAYERS, roomSize), broadcastHz, questions, timers,
+                TimeUnit.SECONDS.toMillis(questionSeconds), timeoutPenalty, TimeUnit.SECONDS.toMillis(resumeSeconds),
+                adaptiveDifficulty);
+        }
+    }
 
     public static void main(String[] args) {
-        new ServerMain().start();
+        int port = DEFAULT_PORT;
+        String mode = "threads";
+        int loops = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        int broadcastHz = DEFAULT_BROADCAST_HZ;
+        int shardCount = Runtime.getRuntime().availableProcessors();
+        int roomSize = DEFAULT_ROOM_SIZE;
+        int outboundQueue = DEFAULT_OUTBOUND_QUEUE;
+        int metricsPort = 0;
+        int questionSeconds = 0;
+        int timeoutPenalty = 0;
+        int resumeSeconds = DEFAULT_RESUME_SECONDS;
+        int heartbeatSeconds = DEFAULT_HEARTBEAT_SECONDS;
+        int heartbeatMisses = DEFAULT_HEARTBEAT_MISSES;
+        String engine = "inline";
+        String difficulty = "normal";
+        String journal = null;
+        String snapshot = null;
+        String stats = null;
+        int snapshotMillis = DEFAULT_SNAPSHOT_MILLIS;
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--mode=")) {
+                mode = arg.substring("--mode=".length());
+            } else if (arg.startsWith("--loops=")) {
+                loops = Integer.parseInt(arg.substring("--loops=".length()));
+            } else if (arg.startsWith("--broadcast-hz=")) {
+                broadcastHz = Integer.parseInt(arg.substring("--broadcast-hz=".length()));
+            } else if (arg.startsWith("--shards=")) {
+                shardCount = Integer.parseInt(arg.substring("--shards=".length()));
+            } else if (arg.startsWith("--room-size=")) {
+                roomSize = Integer.parseInt(arg.substring("--room-size=".length()));
+            } else if (arg.startsWith("--outbound-queue=")) {
+                outboundQueue = Integer.parseInt(arg.substring("--outbound-queue=".length()));
+            } else if (arg.startsWith("--question-seconds=")) {
+                questionSeconds = Integer.parseInt(arg.substring("--question-seconds=".length()));
+            } else if (arg.startsWith("--timeout-penalty=")) {
+                timeoutPenalty = Integer.parseInt(arg.substring("--timeout-penalty=".length()));
+            } else if (arg.startsWith("--resume-seconds=")) {
+                resumeSeconds = Integer.parseInt(arg.substring("--resume-seconds=".length()));
+            } else if (arg.startsWith("--journal=")) {
+                journal = arg.substring("--journal=".length());
+            } else if (arg.startsWith("--snapshot=")) {
+                snapshot = arg.substring("--snapshot=".length());
+            } else if (arg.startsWith("--snapshot-millis=")) {
+                snapshotMillis = Integer.parseInt(arg.substring("--snapshot-millis=".length()));
+            } else if (arg.startsWith("--stats=")) {
+                stats = arg.substring("--stats=".length());
+            } else if (arg.startsWith("--difficulty=")) {
+                difficulty = arg.substring("--difficulty=".length());
+            } else if (arg.startsWith("--engine=")) {
+                engine = arg.substring("--engine=".length());
+            } else if (arg.startsWith("--heartbeat-seconds=")) {
+                heartbeatSeconds = Integer.parseInt(arg.substring("--heartbeat-seconds=".length()));
+            } else if (arg.startsWith("--heartbeat-misses=")) {
+                heartbeatMisses = Integer.parseInt(arg.substring("--heartbeat-misses=".length()));
+            } else if (arg.startsWith("--log-level=")) {
+                Log.setLevel(Log.Level.valueOf(arg.substring("--log-level=".length()).toUpperCase()));
+            } else if (arg.startsWith("--metrics-port=")) {
+                metricsPort = Integer.parseInt(arg.substring("--metrics-port=".length()));
+            }
+        }
+
+        if (mode.equals("virtual")) {
+            ServerThreads.useVirtualThreads();
+        }
+        ServerMain server = new ServerMain(broadcastHz, shardCount, roomSize, outboundQueue,
+            questionSeconds, timeoutPenalty, resumeSeconds, difficulty.equals("adaptive"), engine.equals("loop"));
+        server.setHeartbeat(heartbeatSeconds, heartbeatMisses);
+        if (journal != null) {
+            try {
+                Journal.open(Paths.get(journal));
+            } catch (IOException e) {
+                Log.warn("Journal not opened: {}", e.getMessage());
+            }
+        }
+        if (stats != null) {
+            try {
+                StatsStore.open(Paths.get(stats));
+            } catch (IOException e) {
+                Log.warn("Player stats disabled: {}", e.getMessage());
+            }
+        }
+        if (snapshot != null) {
+            try {
+                server.startSnapshots(Paths.get(snapshot), snapshotMillis);
+            } catch (IOException e) {
+                Log.warn("Snapshots disabled: {}", e.getMessage());
+            }
+        }
+        server.startStatsLog();
+        if (metricsPort > 0) {
+            try {
+                Metrics.startHttp(metricsPort);
+            } catch (IOException e) {
+                Log.warn("Metrics endpoint not started: {}", e.getMessage());
+            }
+        }
+        if (mode.equals("nio")) {
+            try {
+                new NioServer(server, port, loops).start();
+            } catch (IOException e) {
+                Log.error("NIO server failed", e);
+            }
+        } else {
+            server.start(port);
+        }
     }
 
-    public void start() {
+    /**
+     * Memulihkan room dari snapshot terakhir (kalau ada), lalu menulis snapshot
+     * setiap {@code intervalMillis}. Dipanggil sebelum server menerima koneksi.
+     */
+    void startSnapshots(Path path, long intervalMillis) throws IOException {
+        long start = System.nanoTime();
+        Snapshot snapshot = new Snapshot(this, path);
+        int players = snapshot.restore(TimeUnit.SECONDS.toMillis(RESTORE_GRACE_SECONDS));
+        if (players > 0) {
+            Log.info("Restored {} players in {} rooms from {} in {} ms", players, rooms.size(), path,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        snapshot.start(Math.max(1, intervalMillis));
+    }
+
+    /** Room baru untuk Snapshot.restore, dibagi round-robin ke shard seperti matchmaking. */
+    GameRoom restoreRoom(int id) {
+        RoomShard shard = shards[Math.floorMod(nextShard.getAndIncrement(), shards.length)];
+        GameRoom room = shard.restoreRoom(id);
+        rooms.put(id, room);
+        return room;
+    }
+
+    Collection<GameRoom> rooms() {
+        return rooms.values();
+    }
+
+    int outboundQueueSize() {
+        return outboundQueueSize;
+    }
+
+    /** Log berkala isi antrean kirim; hanya dicetak kalau angkanya berubah. */
+    private void startStatsLog() {
+        String[] last = { "" };
+        ServerThreads.newScheduler("server-stats").scheduleAtFixedRate(() -> {
+            String stats = OutboundQueue.stats();
+            if (!stats.equals(last[0])) {
+                last[0] = stats;
+                Log.info("Outbound queues: {}", stats);
+            }
+        }, STATS_LOG_SECONDS, STATS_LOG_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public void start(int port) {
         try {
-            serverSocket = new ServerSocket(5000);
-            System.out.println("Server started on port 5000");
-            System.out.println("Waiting for at least " + MIN_PLAYERS + " players...");
+            serverSocket = new ServerSocket(port);
+            Log.info("Server started on port {} ({} room shards)", port, shards.length);
 
             while (true) {
                 Socket clientSocket = serverSocket.accept();
-                System.out.println("New client connected: " + clientSocket.getInetAddress());
-                
-                if (!gameStarted) {
-                    ClientHandler handler = new ClientHandler(clientSocket, this);
-                    clients.add(handler);
-                    new Thread(handler).start();
-                } else {
-                    // Reject connection if game already started
-                    ObjectOutputStream out = new ObjectOutputStream(clientSocket.getOutputStream());
-                    Message error = new Message(Message.Type.ERROR)
-                        .put("msg", "Game already started");
-                    out.writeObject(error);
-                    out.close();
-                    clientSocket.close();
-                }
+                // RESULT dan QUESTION dikirim berurutan; tanpa ini yang kedua tertahan Nagle
+                // sampai ACK (delayed ACK client ~40ms)
+                clientSocket.setTcpNoDelay(true);
+                Log.debug("New client connected: {}", clientSocket.getInetAddress());
+
+                ClientHandler handler = new ClientHandler(clientSocket, this);
+                ServerThreads.startHandler(handler, "client-handler");
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    public synchronized int registerPlayer(String name) {
-        int id = nextPlayerId++;
-        playerPositions.put(id, 0);
-        playerNames.put(id, name);
-    
-        System.out.println("Player " + id + " registered: " + name + " (Addition Only)");
-    
-        System.out.println("Total players: " + clients.size());
-        System.out.println("Current positions: " + playerPositions);
-        System.out.println("Current names: " + playerNames);
-        
-        // Broadcast current positions to ALL clients immediately
-        broadcastPositions();
-        
-        // Start countdown when second player joins
-        if (clients.size() == MIN_PLAYERS && !countdownStarted) {
-            countdownStarted = true;
-            startCountdown();
+    /**
+     * CONNECT: client yang membawa roomId, playerId dan token dari CONNECT_ACK
+     * sebelumnya (putus sebentar, atau server restart dengan --snapshot)
+     * dikembalikan ke slotnya kalau masih ditahan; selain itu masuk matchmaking
+     * seperti biasa. Setelah CONNECT_ACK terkirim, handler memanggil resume()
+     * untuk pemain yang kembali.
+     */
+    public int connect(Connection client, Message connect) {
+        Object roomId = connect.get("roomId");
+        Object playerId = connect.get("playerId");
+        Object token = connect.get("token");
+        if (roomId instanceof Integer && playerId instanceof Integer && token instanceof Long) {
+            GameRoom room = rooms.get(roomId);
+            if (room != null && room.tryReattach(client, (Integer) playerId, (Long) token)) {
+                return client.playerId;
+            }
         }
-        
-        return id;
+        Object operation = connect.get("operation");
+        return registerPlayer(client, (String) connect.get("name"),
+            QuestionPool.operationIndex(operation instanceof String ? (String) operation : null));
     }
 
-    private void startCountdown() {
-        System.out.println("Starting " + COUNTDOWN_SECONDS + " second countdown...");
-    
-        countdownTimer = new Timer();
-        final int[] countdown = { COUNTDOWN_SECONDS };
-    
-        countdownTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                if (countdown[0] > 0) {
-    
-                    Message countdownMsg = new Message(Message.Type.COUNTDOWN)
-                            .put("seconds", countdown[0])
-                            .put("playerCount", clients.size());
-    
-                    broadcast(countdownMsg);
-    
-                    System.out.println("Countdown: " + countdown[0]);
-                    countdown[0]--;
-    
-                } else {
-                    countdownTimer.cancel();
-                    startGame();
-                }
-            }
-        }, 1000, 1000); 
+    /** CONNECT_ACK untuk pemain yang baru masuk atau kembali, berisi token resume slotnya. */
+    static Message connectAck(Connection client) {
+        GameRoom room = client.room;
+        Message ack = new Message(Message.Type.CONNECT_ACK).put("playerId", client.playerId);
+        if (room != null) {
+            ack.put("roomId", room.id).put("token", room.players.token(client.playerId));
+        }
+        if (client.resumed) {
+            ack.put("resumed", true);
+        }
+        return ack;
     }
-    
-    private void startGame() {
-        gameStarted = true;
-    
-        broadcast(new Message(Message.Type.START)
-            .put("playerCount", clients.size()));
-    
-        broadcastPositions();
-    
-        new Thread(() -> {
-            try {
-                Thread.sleep(2000);
-                for (ClientHandler c : clients) {
-                    sendQuestionToPlayer(c.playerId);
-                }
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }).start();
+
+    public void resume(Connection client) {
+        GameRoom room = client.room;
+        if (room != null) {
+            room.resume(client);
+        }
     }
-    
-    private QuestionAnswer generateQuestion() {
-        Random rand = new Random();
-        int a = rand.nextInt(20) + 1;
-        int b = rand.nextInt(20) + 1;
-    
-        String question = a + " + " + b;
-        String answer = String.valueOf(a + b);
-    
-        return new QuestionAnswer(question, answer);
+
+    public int registerPlayer(Connection client, String name) {
+        return registerPlayer(client, name, QuestionPool.ADD);
     }
-    
 
-    private void sendQuestionToPlayer(int playerId) {
-        int qId = playerQuestionId.getOrDefault(playerId, 0) + 1;
-        playerQuestionId.put(playerId, qId);
-    
-        QuestionAnswer qa = generateQuestion();
-        playerCorrectAnswer.put(playerId, qa.answer);
-    
-        Message msg = new Message(Message.Type.QUESTION)
-            .put("qId", qId)
-            .put("text", qa.question);
-    
-        for (ClientHandler c : clients) {
-            if (c.playerId == playerId) {
-                c.send(msg);
-                break;
+    /**
+     * Matchmaking: pemain masuk ke room yang sedang diisi. Lock lobby hanya
+     * diambil saat room itu sudah mulai atau penuh, untuk membuka room baru di
+     * shard berikutnya (round-robin); join biasa hanya mengunci room-nya.
+     *
+     * @param operation operasi soal pemain ini (QuestionPool.ADD..DIVIDE)
+     */
+    public int registerPlayer(Connection client, String name, int operation) {
+        while (true) {
+            GameRoom room = fillingRoom;
+            if (room != null) {
+                int id = room.tryRegister(client, name, operation);
+                if (id >= 0) return id;
             }
-        }
-    }
-    
-    
-    public synchronized void processAnswer(int playerId, int qId, int answer) {
-        if (gameOver) return;
-    
-        int expectedQId = playerQuestionId.getOrDefault(playerId, -1);
-        if (qId != expectedQId) return;
-    
-        String correct = playerCorrectAnswer.get(playerId);
-        boolean isCorrect = String.valueOf(answer).equals(correct);
-    
-        if (isCorrect) {
-            int newPos = Math.min(playerPositions.get(playerId) + 10, FINISH_LINE);
-            playerPositions.put(playerId, newPos);
-    
-            broadcastPositions();
-            if (newPos >= FINISH_LINE) {
-                gameOver = true;
-            
-                // Kirim GAME_OVER dengan data lengkap untuk podium
-                Message winMsg = new Message(Message.Type.GAME_OVER)
-                    .put("winnerId", playerId)
-                    .put("winnerName", playerNames.get(playerId))
-                    .put("posMap", new HashMap<>(playerPositions))
-                    .put("names", new HashMap<>(playerNames));
-            
-                broadcast(winMsg);
-            
-                System.out.println("WINNER: " + playerNames.get(playerId));
-                System.out.println("Final Positions: " + playerPositions);
-            
-                // Reset server setelah game over
-                new Timer().schedule(new TimerTask() {
-                    @Override
-                    public void run() {
-                        resetGame();
-                    }
-                }, 5000); // delay 5 detik (biar client lihat podium)
-            
-                return;
+            synchronized (matchmakingLock) {
+                if (fillingRoom == room) {
+                    RoomShard shard = shards[Math.floorMod(nextShard.getAndIncrement(), shards.length)];
+                    fillingRoom = shard.openRoom();
+                    rooms.put(fillingRoom.id, fillingRoom);
+                }
             }
-            
-        } else {
-            broadcastPositions();
-        }
-    
-        if (!gameOver) {
-            sendQuestionToPlayer(playerId);
         }
     }
-    
-    private void broadcastPositions() {
-        Message msg = new Message(Message.Type.RESULT)
-            .put("posMap", new HashMap<>(playerPositions))
-            .put("names", new HashMap<>(playerNames));
-        
-        System.out.println("Broadcasting positions to " + clients.size() + " clients");
-        System.out.println("Positions: " + playerPositions);
-        System.out.println("Names: " + playerNames);
-        
-        broadcast(msg);
+
+    /**
+     * @param seconds jarak antar PING ke client yang memintanya; 0 = heartbeat mati
+     * @param misses  PING tanpa balasan berturut-turut sebelum client diputus
+     */
+    public void setHeartbeat(int seconds, int misses) {
+        heartbeat.configure(TimeUnit.SECONDS.toMillis(seconds), misses);
     }
 
-    private void broadcast(Message msg) {
-        for (ClientHandler client : clients) {
-            client.send(msg);
-        }
+    Heartbeat heartbeat() {
+        return heartbeat;
     }
 
-    private synchronized void resetGame() {
-        System.out.println("Resetting game...");
-    
-        gameOver = false;
-        gameStarted = false;
-        countdownStarted = false;
-    
-        nextPlayerId = 1;
-    
-        playerPositions.clear();
-        playerNames.clear();
-        playerQuestionId.clear();
-        playerCorrectAnswer.clear();
-    
-        System.out.println("Server reset complete. Ready for new game.");
+    public void processAnswer(Connection client, int qId, int answer) {
+        if (gameLoop != null) {
+            gameLoop.publish(client, qId, answer);
+            return;
+        }
+        GameRoom room = client.room;
+        if (room != null) {
+            long start = System.nanoTime();
+            room.processAnswer(client.playerId, qId, answer);
+            Metrics.ANSWER_NANOS.record(System.nanoTime() - start);
+        }
     }
-    
-    
 
-    public void removeClient(ClientHandler client) {
-        clients.remove(client);
-        playerPositions.remove(client.playerId);
-        playerNames.remove(client.playerId);
-        playerQuestionId.remove(client.playerId);
-        playerCorrectAnswer.remove(client.playerId);
-        System.out.println("Player " + client.playerId + " disconnected");
-        broadcastPositions();
+    public void resync(Connection client) {
+        GameRoom room = client.room;
+        if (room != null) {
+            room.resync(client);
+        }
     }
-    
-    
-    
-    private static class QuestionAnswer {
-        String question;
-        String answer;
-        
-        QuestionAnswer(String q, String a) {
-            this.question = q;
-            this.answer = a;
+
+    public void removeClient(Connection client) {
+        GameRoom room = client.room;
+        if (room != null) {
+            room.removeClient(client);
+            client.room = null;
         }
     }
 }
 
-class ClientHandler implements Runnable {
+class ClientHandler extends Connection implements Runnable {
     private Socket socket;
     private ServerMain server;
     private ObjectOutputStream out;
     private ObjectInputStream in;
-    public int playerId;
+    private CountingOutputStream rawOut;
+    // Hanya disentuh thread writer
+    private boolean binaryOut = false;
+    private final OutboundQueue outbound;
 
     public ClientHandler(Socket socket, ServerMain server) {
         this.socket = socket;
         this.server = server;
+        this.outbound = new OutboundQueue(this, server.outboundQueueSize());
     }
 
     @Override
     public void run() {
+        Metrics.CONNECTIONS.increment();
+        Metrics.CONNECTED.incrementAndGet();
         try {
-            out = new ObjectOutputStream(socket.getOutputStream());
+            rawOut = new CountingOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out = new ObjectOutputStream(rawOut);
+            out.flush();
+            ServerThreads.startHandler(this::writeLoop, "client-writer");
             in = new ObjectInputStream(socket.getInputStream());
 
             Message firstMsg = (Message) in.readObject();
             if (firstMsg.type == Message.Type.CONNECT) {
-                String name = (String) firstMsg.get("name");
-                playerId = server.registerPlayer(name);
-                Message ack = new Message(Message.Type.CONNECT_ACK).put("playerId", playerId);
+                boolean binary = BinaryCodec.requested(firstMsg);
+                deltaPositions = Boolean.TRUE.equals(firstMsg.get("delta"));
+                needsSnapshot = deltaPositions;
+                playerId = server.connect(this, firstMsg);
+                Message ack = ServerMain.connectAck(this);
+                if (binary) {
+                    ack.put("codec", BinaryCodec.NAME);
+                }
                 send(ack);
+                if (resumed) {
+                    server.resume(this);
+                }
+                if (Heartbeat.requested(firstMsg)) {
+                    server.heartbeat().start(this);
+                }
+                // Setelah CONNECT client tidak mengirim apa-apa sampai menerima ACK,
+                // jadi aman langsung pindah ke frame biner di sisi baca.
+                InputStream rawIn = binary ? new BufferedInputStream(socket.getInputStream()) : null;
                 while (true) {
-                    Message msg = (Message) in.readObject();
+                    Message msg = binary ? BinaryCodec.read(rawIn) : (Message) in.readObject();
                     if (msg.type == Message.Type.ANSWER) {
                         int qId = (int) msg.get("qId");
                         int answer = (int) msg.get("answer");
-                        server.processAnswer(playerId, qId, answer);
+                        server.processAnswer(this, qId, answer);
                     } else if (msg.type == Message.Type.PING) {
-                        // Respond to ping to keep connection alive
-                        send(new Message(Message.Type.PING));
+                        // Balasan heartbeat, atau ping dari client yang dibalas
+                        server.heartbeat().onPing(this, msg);
+                    } else if (msg.type == Message.Type.RESYNC) {
+                        server.resync(this);
                     }
                 }
             }
         } catch (Exception e) {
-            System.out.println("Client handler error: " + e.getMessage());
+            Log.debug("Client handler error: {}", e.getMessage());
         } finally {
+            Metrics.CONNECTED.decrementAndGet();
+            server.heartbeat().stop(this);
             server.removeClient(this);
+            outbound.close();
             try {
                 socket.close();
             } catch (IOException e) {
@@ -317,12 +443,76 @@ class ClientHandler implements Runnable {
         }
     }
 
+    /** Tidak pernah blocking: pesan masuk antrean, thread writer yang menulis. */
+    @Override
     public void send(Message msg) {
+        if (!outbound.offer(msg)) {
+            Log.warn("Player {} is not keeping up, disconnecting", playerId);
+            close();
+        }
+    }
+
+    /** Menguras antrean kirim; flush sekali setelah antrean kosong. */
+    private void writeLoop() {
         try {
-            out.writeObject(msg);
-            out.flush();
+            Message msg;
+            while ((msg = outbound.take()) != null) {
+                long before = rawOut.written;
+                if (binaryOut) {
+                    rawOut.write(msg.isShared() ? SharedFrames.binary(msg) : BinaryCodec.encode(msg));
+                } else if (msg.isShared()) {
+                    out.flush();
+                    rawOut.write(SharedFrames.java(msg));
+                    out.reset();
+                    out.flush();
+                } else {
+                    out.writeObject(msg);
+                    out.flush();
+                    // ACK yang membawa "codec" adalah frame serialized terakhir
+                    if (msg.type == Message.Type.CONNECT_ACK && BinaryCodec.NAME.equals(msg.get("codec"))) {
+                        binaryOut = true;
+                    }
+                }
+                Metrics.bytesSent(msg.type, rawOut.written - before);
+                if (outbound.isEmpty()) {
+                    rawOut.flush();
+                }
+            }
         } catch (IOException e) {
-            System.out.println("Error sending message to player " + playerId);
+            Log.debug("Error sending message to player {}", playerId);
+            close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Menghitung byte yang ditulis, untuk metrik byte terkirim per tipe pesan. */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long written;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            written += len;
+        }
+    }
+
+    @Override
+    public void close() {
+        outbound.close();
+        try {
+            socket.close();
+        } catch (IOException ignored) {
         }
     }
 }
\ No newline at end of file
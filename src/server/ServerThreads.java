@@ -0,0 +1,66 @@
+package server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Tempat semua thread server dibuat: handler per koneksi, executor shard room
+ * dan scheduler untuk tugas periodik server. Default-nya platform
+ * thread seperti sebelumnya; dengan --mode=virtual semuanya dijalankan di
+ * virtual thread sehingga read yang blocking tidak lagi memakan satu OS thread
+ * (dan stack ~1MB) per pemain.
+ */
+public final class ServerThreads {
+    private static volatile ExecutorService virtualExecutor;
+
+    private ServerThreads() {
+    }
+
+    /** Mengaktifkan virtual thread; dipanggil sekali saat start, sebelum thread apa pun dibuat. */
+    public static void useVirtualThreads() {
+        virtualExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    public static boolean isVirtual() {
+        return virtualExecutor != null;
+    }
+
+    /** Menjalankan handler koneksi (loop readObject yang blocking). */
+    public static void startHandler(Runnable handler, String name) {
+        ExecutorService executor = virtualExecutor;
+        if (executor != null) {
+            executor.execute(handler);
+        } else {
+            new Thread(handler, name).start();
+        }
+    }
+
+    /**
+     * Scheduler satu thread untuk tugas periodik server (refill soal,
+     * statistik). Timer room memakai TimerWheel.
+     */
+    public static ScheduledExecutorService newScheduler(String name) {
+        return Executors.newSingleThreadScheduledExecutor(threadFactory(name));
+    }
+
+    /**
+     * Executor satu thread tempat task timer room dijalankan. Di mode virtual
+     * thread-nya juga virtual; di mode platform berupa daemon thread biasa.
+     */
+    public static ExecutorService newExecutor(String name) {
+        return Executors.newSingleThreadExecutor(threadFactory(name));
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        if (virtualExecutor != null) {
+            return Thread.ofVirtual().name(name).factory();
+        }
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
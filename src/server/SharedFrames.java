@@ -0,0 +1,55 @@
+package server;
+
+import common.BinaryCodec;
+import common.Message;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+/**
+ * Encode sekali untuk pesan broadcast (Message.shared()): frame pertama yang
+ * diminta writer mana pun di-cache di Message, writer lain memakai byte yang
+ * sama.
+ *
+ * Frame biner sudah berdiri sendiri. Stream Java serialization menyimpan
+ * handle antar-objek, jadi frame bersamanya diawali TC_RESET dan di-encode
+ * dengan tabel handle kosong; writer harus memanggil reset() pada
+ * ObjectOutputStream miliknya setelah menyisipkan frame ini supaya kedua sisi
+ * kembali sinkron.
+ */
+final class SharedFrames {
+    static final int JAVA = 0;
+    static final int BINARY = 1;
+
+    // Panjang header stream (magic + version) yang ditulis constructor ObjectOutputStream
+    private static final int STREAM_HEADER_LENGTH = 4;
+
+    private SharedFrames() {
+    }
+
+    static byte[] binary(Message msg) {
+        byte[] frame = msg.cachedFrame(BINARY);
+        if (frame == null) {
+            frame = BinaryCodec.encode(msg);
+            msg.cacheFrame(BINARY, frame);
+        }
+        return frame;
+    }
+
+    static byte[] java(Message msg) throws IOException {
+        byte[] frame = msg.cachedFrame(JAVA);
+        if (frame == null) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.reset();
+            out.writeObject(msg);
+            out.flush();
+            byte[] all = bytes.toByteArray();
+            frame = Arrays.copyOfRange(all, STREAM_HEADER_LENGTH, all.length);
+            msg.cacheFrame(JAVA, frame);
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,239 @@
+package server;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshot state balapan ke file memory-mapped (--snapshot=path), supaya
+ * server yang mati di tengah balapan bisa dilanjutkan: setelah restart room,
+ * nama, posisi dan nomor soal setiap pemain dipulihkan, dan client yang
+ * connect lagi dengan token resume lamanya kembali ke slot yang sama.
+ *
+ * Jalur jawaban tidak tahu apa-apa soal snapshot. Thread snapshot membaca
+ * PlayerTable tanpa lock room (atomik per field; posisi satu pemain bisa
+ * tertinggal satu jawaban) ke buffer heap, lalu menyalinnya ke salah satu dari
+ * dua region di file. Region yang berisi snapshot terakhir tidak pernah
+ * ditimpa, jadi crash di tengah penulisan tetap menyisakan satu snapshot utuh;
+ * saat restore dipilih region dengan seq tertinggi yang CRC-nya cocok.
+ *
+ * Format file: header (MAGIC u4, VERSION u4, ukuran region u8), lalu dua region
+ * berisi seq u8, panjang u4, CRC32 u4 dan payload:
+ *   jumlah room u4, lalu per room: roomId u4, gameId u8, fase u1, jumlah
+ *   pemain u2, lalu per pemain: playerId u2, posisi u4, soal u8 (lihat
+ *   PlayerTable.pack), token resume u8, operasi u1, nama (panjang u2 + UTF-8).
+ */
+final class Snapshot {
+    static final int MAGIC = 0x4C4D5153; // "LMQS"
+    private static final int VERSION = 3;
+    private static final int FILE_HEADER = 16;
+    private static final int REGION_HEADER = 16;
+    private static final long INITIAL_REGION_BYTES = 1 << 20;
+
+    private static final Metrics.Histogram WRITE_NANOS = Metrics.histogram("snapshot_write_nanos");
+
+    private final ServerMain server;
+    private final FileChannel channel;
+    private MappedByteBuffer map;
+    private long regionBytes;
+    private ByteBuffer scratch = ByteBuffer.allocate(64 * 1024);
+    private final CRC32 crc = new CRC32();
+    private long seq;
+    /** Region berisi snapshot valid terakhir (0/1), -1 kalau belum ada. */
+    private int latest = -1;
+    private volatile long lastBytes;
+
+    Snapshot(ServerMain server, Path path) throws IOException {
+        this.server = server;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        boolean fresh = channel.size() < FILE_HEADER;
+        if (!fresh) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+            channel.read(header, 0);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a snapshot file: " + path);
+            }
+            if (header.getInt(4) != VERSION) {
+                // Snapshot dari versi server lain tidak bisa dibaca: mulai dari file kosong
+                Log.warn("Snapshot: {} has version {}, expected {}; discarding it", path, header.getInt(4), VERSION);
+                channel.truncate(0);
+                fresh = true;
+            } else {
+                regionBytes = header.getLong(8);
+            }
+        }
+        if (fresh) {
+            regionBytes = INITIAL_REGION_BYTES;
+        }
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_HEADER + 2 * regionBytes);
+        if (fresh) {
+            map.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, regionBytes);
+            map.force();
+        }
+        Metrics.gauge("snapshot_bytes", () -> lastBytes);
+    }
+
+    /**
+     * Memulihkan room dari snapshot valid terakhir. Pemain yang dipulihkan
+     * menunggu client-nya selama {@code graceMillis}, setelah itu dikeluarkan.
+     *
+     * @return jumlah pemain yang dipulihkan
+     */
+    synchronized int restore(long graceMillis) {
+        long bestSeq = -1;
+        for (int region = 0; region < 2; region++) {
+            long at = regionOffset(region);
+            long regionSeq = map.getLong((int) at);
+            int length = map.getInt((int) at + 8);
+            if (regionSeq <= bestSeq || length <= 0 || length > regionBytes - REGION_HEADER) continue;
+            crc.reset();
+            crc.update(map.slice((int) at + REGION_HEADER, length));
+            if ((int) crc.getValue() != map.getInt((int) at + 12)) continue;
+            bestSeq = regionSeq;
+            latest = region;
+        }
+        if (latest < 0) return 0;
+        seq = bestSeq;
+
+        ByteBuffer in = map.slice((int) regionOffset(latest) + REGION_HEADER, map.getInt((int) regionOffset(latest) + 8));
+        int restored = 0;
+        int rooms = in.getInt();
+        for (int r = 0; r < rooms; r++) {
+            int roomId = in.getInt();
+            long gameId = in.getLong();
+            int phase = in.get();
+            int count = in.getShort() & 0xFFFF;
+            GameRoom room = server.restoreRoom(roomId);
+            for (int p = 0; p < count; p++) {
+                int playerId = in.getShort() & 0xFFFF;
+                int position = in.getInt();
+                long question = in.getLong();
+                long token = in.getLong();
+                int operation = in.get();
+                String name = string(in);
+                room.restorePlayer(playerId, name, operation, position, question, token, graceMillis);
+            }
+            room.restored(gameId, phase == GameRoom.RACING);
+            restored += count;
+        }
+        lastBytes = in.limit();
+        return restored;
+    }
+
+    /** Mulai menulis snapshot berkala, dan sekali lagi saat JVM berhenti. */
+    void start(long intervalMillis) {
+        ServerThreads.newScheduler("snapshot").scheduleWithFixedDelay(this::writeQuietly,
+            intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::writeQuietly, "snapshot-close"));
+    }
+
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (IOException | RuntimeException e) {
+            Log.error("Snapshot: write failed", e);
+        }
+    }
+
+    /** Menyalin state semua room lalu menulisnya ke region yang bukan snapshot terakhir. */
+    synchronized void write() throws IOException {
+        long start = System.nanoTime();
+        while (true) {
+            try {
+                scratch.clear();
+                encode(scratch);
+                break;
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+        scratch.flip();
+        int length = scratch.remaining();
+        crc.reset();
+        crc.update(scratch.duplicate());
+
+        int region = latest == 0 ? 1 : 0;
+        boolean grown = length > regionBytes - REGION_HEADER;
+        if (grown) {
+            region = grow(length);
+        }
+        int at = (int) regionOffset(region);
+        map.put(at + REGION_HEADER, scratch, 0, length);
+        map.force(at + REGION_HEADER, length);
+        // Header ditulis terakhir: region ini baru dianggap valid setelah payload-nya di disk
+        map.putLong(at, ++seq).putInt(at + 8, length).putInt(at + 12, (int) crc.getValue());
+        map.force(at, REGION_HEADER);
+        if (grown) {
+            map.putLong(8, regionBytes);
+            map.force(0, FILE_HEADER);
+        }
+        latest = region;
+        lastBytes = length;
+        WRITE_NANOS.record(System.nanoTime() - start);
+    }
+
+    private void encode(ByteBuffer out) {
+        int countAt = out.position();
+        out.putInt(0);
+        int rooms = 0;
+        for (GameRoom room : server.rooms()) {
+            int phase = room.phase();
+            if (phase == GameRoom.FINISHED) continue;
+            PlayerTable players = room.players;
+            int roomAt = out.position();
+            out.putInt(room.id).putLong(room.gameId()).put((byte) phase).putShort((short) 0);
+            int count = 0;
+            for (int id = 1; id <= players.capacity(); id++) {
+                // Baca koneksi dulu: nama ditulis sebelum koneksi dipasang
+                if (!players.isActive(id)) continue;
+                out.putShort((short) id).putInt(players.position(id)).putLong(players.question(id))
+                    .putLong(players.token(id)).put((byte) players.operation(id));
+                String name = players.name(id);
+                byte[] utf8 = name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+                out.putShort((short) utf8.length).put(utf8);
+                count++;
+            }
+            if (count == 0) {
+                out.position(roomAt);
+                continue;
+            }
+            out.putShort(roomAt + 13, (short) count);
+            rooms++;
+        }
+        out.putInt(countAt, rooms);
+    }
+
+    /**
+     * Membesarkan region sampai muat. Snapshot berikutnya selalu ditulis ke
+     * region 1 layout baru, yang letaknya di luar kedua region lama, dan ukuran
+     * region baru dicatat di header setelahnya; crash di antara keduanya
+     * menyisakan layout lama yang masih utuh.
+     */
+    private int grow(int length) throws IOException {
+        long size = regionBytes;
+        while (length > size - REGION_HEADER) {
+            size *= 2;
+        }
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_HEADER + 2 * size);
+        regionBytes = size;
+        return 1;
+    }
+
+    private long regionOffset(int region) {
+        return FILE_HEADER + region * regionBytes;
+    }
+
+    private static String string(ByteBuffer in) {
+        byte[] utf8 = new byte[in.getShort() & 0xFFFF];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
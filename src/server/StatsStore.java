@@ -0,0 +1,497 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistik kumulatif pemain lintas balapan (--stats=path): jumlah balapan,
+ * menang, akurasi dan persentil latensi jawaban per operasi. Pemain dikenali
+ * dari namanya.
+ *
+ * Di disk berupa log append-only: setiap GAME_OVER menambahkan satu record
+ * RACE per pemain (hasil balapan itu saja). Saat server start log diputar
+ * ulang ke index di memori (map nama -> statistik), lalu kalau record RACE
+ * sudah jauh lebih banyak dari jumlah pemain, log dipadatkan menjadi satu
+ * record TOTAL per pemain (file baru, lalu rename atomik).
+ *
+ * Semua perubahan dilakukan satu thread "stats-store"; GameRoom hanya
+ * menyerahkan hasil balapan. Top-K leaderboard disimpan sebagai array
+ * immutable yang diganti setiap kali berubah, jadi query leaderboard cukup
+ * membaca satu field volatile.
+ *
+ * Format: MAGIC, lalu record: panjang u4, tipe u1, nama (panjang u2 + UTF-8),
+ *   RACE: menang u1, operasi u1, jawaban u4, benar u4, histogram
+ *   TOTAL: balapan u4, menang u4, lalu per operasi: jawaban u8, benar u8, histogram
+ * Histogram latensi: jumlah bucket terisi u1, lalu (bucket u1, jumlah u8).
+ */
+public final class StatsStore {
+    static final int MAGIC = 0x4C4D5150; // "LMQP"
+    private static final byte RACE = 1;
+    private static final byte TOTAL = 2;
+
+    // Bucket latensi (ms) log-linear seperti Metrics.Histogram, tetapi lebih kasar
+    // (galat < 25%) supaya muat per pemain: bucket 71 = ~2^18 ms
+    private static final int SUB_BITS = 3;
+    static final int LATENCY_BUCKETS = 72;
+
+    private static final int TOP_K = 100;
+    // Log dipadatkan saat start kalau record RACE lebih dari ini kali jumlah pemain
+    private static final int COMPACT_RATIO = 4;
+    private static final int MAX_NAME_BYTES = 256;
+
+    private static final Metrics.Counter RACES = Metrics.counter("stats_races_total");
+
+    private static volatile boolean enabled = false;
+    private static volatile Entry[] top = new Entry[0];
+    private static volatile long playerCount;
+
+    // Hanya disentuh thread stats-store (dan open sebelum thread itu dipakai)
+    private static final Map<String, Player> players = new HashMap<>();
+    private static ExecutorService executor;
+    private static FileChannel channel;
+    private static ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    // Akhir record utuh terakhir yang dibaca load(); sisa setelahnya dipotong sebelum append
+    private static long loadedBytes;
+
+    /** Hasil satu pemain di satu balapan, dikumpulkan GameRoom saat GAME_OVER. */
+    static final class Result {
+        final String name;
+        final boolean won;
+        final int operation;
+        final int answers;
+        final int correct;
+        final int[] latency;
+
+        Result(String name, boolean won, int operation, int answers, int correct, int[] latency) {
+            this.name = name;
+            this.won = won;
+            this.operation = operation;
+            this.answers = answers;
+            this.correct = correct;
+            this.latency = latency;
+        }
+    }
+
+    /** Satu baris leaderboard; immutable sehingga bisa dibaca thread mana pun. */
+    public static final class Entry {
+        public final String name;
+        public final int races;
+        public final int wins;
+        public final long answers;
+        public final long correct;
+        public final long p50Millis;
+
+        Entry(Player p) {
+            long answers = 0;
+            long correct = 0;
+            long[] latency = new long[LATENCY_BUCKETS];
+            for (int op = 0; op < QuestionPool.OPERATIONS.length; op++) {
+                answers += p.answers[op];
+                correct += p.correct[op];
+                for (int b = 0; b < LATENCY_BUCKETS; b++) {
+                    latency[b] += p.latency[op][b];
+                }
+            }
+            this.name = p.name;
+            this.races = p.races;
+            this.wins = p.wins;
+            this.answers = answers;
+            this.correct = correct;
+            this.p50Millis = percentile(latency, 50);
+        }
+
+        /** Akurasi dalam permil. */
+        public int accuracy() {
+            return answers == 0 ? 0 : (int) (correct * 1000 / answers);
+        }
+    }
+
+    private static final class Player {
+        final String name;
+        int races;
+        int wins;
+        final long[] answers = new long[QuestionPool.OPERATIONS.length];
+        final long[] correct = new long[QuestionPool.OPERATIONS.length];
+        final long[][] latency = new long[QuestionPool.OPERATIONS.length][LATENCY_BUCKETS];
+        /** Sedang ada di top; dipakai untuk memutuskan apakah top perlu dihitung ulang. */
+        boolean ranked;
+
+        Player(String name) {
+            this.name = name;
+        }
+
+        long wins() {
+            return wins;
+        }
+
+        long accuracy() {
+            long a = 0;
+            long c = 0;
+            for (int op = 0; op < answers.length; op++) {
+                a += answers[op];
+                c += correct[op];
+            }
+            return a == 0 ? 0 : c * 1000 / a;
+        }
+    }
+
+    // Menang terbanyak, lalu akurasi, lalu nama supaya urutannya stabil
+    private static final Comparator<Player> RANK = Comparator.comparingLong(Player::wins)
+        .thenComparingLong(Player::accuracy)
+        .thenComparing((Player p) -> p.name, Comparator.reverseOrder())
+        .reversed();
+
+    private StatsStore() {
+    }
+
+    /** Memuat (atau membuat) file statistik dan memulai thread stats-store. */
+    public static synchronized void open(Path path) throws IOException {
+        if (enabled) return;
+        long start = System.nanoTime();
+        loadedBytes = 0;
+        int records = Files.exists(path) ? load(path) : 0;
+        if (records > COMPACT_RATIO * Math.max(1, players.size())) {
+            compact(path);
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+        // Record terakhir yang terpotong (server mati saat menulis) dibuang, supaya
+        // record baru tidak menempel di belakangnya dan merusak pembacaan berikutnya
+        if (channel.size() > loadedBytes) {
+            Log.warn("Stats: dropping {} bytes of torn record at end of {}", channel.size() - loadedBytes, path);
+            channel.truncate(loadedBytes);
+        }
+        if (channel.size() == 0) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, MAGIC));
+        }
+        rebuildTop();
+        executor = ServerThreads.newExecutor("stats-store");
+        Runtime.getRuntime().addShutdownHook(new Thread(StatsStore::close, "stats-close"));
+        playerCount = players.size();
+        Metrics.gauge("stats_players", () -> playerCount);
+        enabled = true;
+        Log.info("Stats: {} players from {} ({} records) in {} ms", players.size(), path.toAbsolutePath(), records,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Dipanggil GameRoom saat GAME_OVER; penulisan dan update index terjadi di thread stats-store. */
+    static void recordRace(List<Result> results) {
+        if (!enabled || results.isEmpty()) return;
+        executor.execute(() -> apply(results));
+    }
+
+    /** Top-n leaderboard; hanya membaca array yang sudah jadi. */
+    public static Entry[] leaderboard(int n) {
+        Entry[] current = top;
+        return n >= current.length ? current : Arrays.copyOf(current, Math.max(0, n));
+    }
+
+    /** Statistik satu pemain dalam bentuk teks, atau null kalau tidak dikenal. */
+    public static String playerStats(String name) {
+        if (!enabled) return null;
+        try {
+            String key = storedName(name);
+            return executor.submit(() -> render(players.get(key))).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /** Leaderboard dalam bentuk teks: peringkat, nama, menang/balapan, akurasi, median latensi. */
+    public static String renderLeaderboard(int n) {
+        StringBuilder sb = new StringBuilder(64 * Math.max(0, Math.min(n, TOP_K)));
+        Entry[] entries = leaderboard(n);
+        for (int i = 0; i < entries.length; i++) {
+            Entry e = entries[i];
+            sb.append(i + 1).append(' ').append(e.name)
+                .append(" wins=").append(e.wins).append('/').append(e.races)
+                .append(" accuracy=").append(e.accuracy() / 10.0).append('%')
+                .append(" p50=").append(e.p50Millis).append("ms\n");
+        }
+        return sb.toString();
+    }
+
+    // ===== Bucket latensi =====
+
+    static int latencyBucket(long millis) {
+        return Math.min(Metrics.Histogram.index(Math.max(0, millis), SUB_BITS), LATENCY_BUCKETS - 1);
+    }
+
+    private static long bucketUpper(int index) {
+        return Metrics.Histogram.upperBound(index, SUB_BITS);
+    }
+
+    private static long percentile(long[] counts, double p) {
+        long n = 0;
+        for (long c : counts) n += c;
+        if (n == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(n * p / 100.0));
+        long seen = 0;
+        for (int b = 0; b < counts.length; b++) {
+            seen += counts[b];
+            if (seen >= target) return bucketUpper(b);
+        }
+        return bucketUpper(counts.length - 1);
+    }
+
+    // ===== Thread stats-store =====
+
+    private static void apply(List<Result> results) {
+        boolean topChanged = false;
+        Entry[] current = top;
+        buffer.clear();
+        for (Result r : results) {
+            Player p = players.computeIfAbsent(storedName(r.name), Player::new);
+            add(p, r.won, r.operation, r.answers, r.correct, r.latency);
+            encodeRace(r, p.name);
+            // Top hanya perlu dihitung ulang kalau pemain ini ada di sana atau bisa masuk
+            if (p.ranked || current.length < TOP_K || RANK.compare(p, playerOf(current[current.length - 1])) < 0) {
+                topChanged = true;
+            }
+        }
+        playerCount = players.size();
+        RACES.increment();
+        try {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            Log.error("Stats: failed to append {} race records", results.size(), e);
+        }
+        if (topChanged) rebuildTop();
+    }
+
+    private static Player playerOf(Entry e) {
+        return players.get(e.name);
+    }
+
+    private static void add(Player p, boolean won, int op, long answers, long correct, int[] latency) {
+        p.races++;
+        if (won) p.wins++;
+        p.answers[op] += answers;
+        p.correct[op] += correct;
+        for (int b = 0; b < LATENCY_BUCKETS; b++) {
+            p.latency[op][b] += latency[b];
+        }
+    }
+
+    /** Top-K dengan min-heap berukuran K: O(n log K), hanya saat pemain papan atas berubah. */
+    private static void rebuildTop() {
+        PriorityQueue<Player> heap = new PriorityQueue<>(TOP_K + 1, RANK.reversed());
+        for (Player p : players.values()) {
+            p.ranked = false;
+            heap.add(p);
+            if (heap.size() > TOP_K) heap.poll();
+        }
+        Entry[] entries = new Entry[heap.size()];
+        for (int i = entries.length - 1; i >= 0; i--) {
+            Player p = heap.poll();
+            p.ranked = true;
+            entries[i] = new Entry(p);
+        }
+        top = entries;
+    }
+
+    private static String render(Player p) {
+        if (p == null) return null;
+        StringBuilder sb = new StringBuilder(256);
+        sb.append(p.name).append(" races=").append(p.races).append(" wins=").append(p.wins)
+            .append(" accuracy=").append(p.accuracy() / 10.0).append("%\n");
+        for (int op = 0; op < QuestionPool.OPERATIONS.length; op++) {
+            if (p.answers[op] == 0) continue;
+            sb.append("  ").append(QuestionPool.OPERATIONS[op])
+                .append(" answers=").append(p.answers[op])
+                .append(" correct=").append(p.correct[op])
+                .append(" p50=").append(percentile(p.latency[op], 50)).append("ms")
+                .append(" p90=").append(percentile(p.latency[op], 90)).append("ms")
+                .append(" p99=").append(percentile(p.latency[op], 99)).append("ms\n");
+        }
+        return sb.toString();
+    }
+
+    // ===== Format file =====
+
+    private static void encodeRace(Result r, String name) {
+        ensure(32 + MAX_NAME_BYTES + LATENCY_BUCKETS * 9);
+        int start = begin(RACE, name);
+        buffer.put((byte) (r.won ? 1 : 0)).put((byte) r.operation).putInt(r.answers).putInt(r.correct);
+        int counted = 0;
+        for (int count : r.latency) {
+            if (count != 0) counted++;
+        }
+        buffer.put((byte) counted);
+        for (int b = 0; b < LATENCY_BUCKETS; b++) {
+            if (r.latency[b] != 0) buffer.put((byte) b).putLong(r.latency[b]);
+        }
+        buffer.putInt(start, buffer.position() - start - 4);
+    }
+
+    private static void encodeTotal(Player p) {
+        ensure(32 + MAX_NAME_BYTES + QuestionPool.OPERATIONS.length * (17 + LATENCY_BUCKETS * 9));
+        int start = begin(TOTAL, p.name);
+        buffer.putInt(p.races).putInt(p.wins);
+        for (int op = 0; op < QuestionPool.OPERATIONS.length; op++) {
+            buffer.putLong(p.answers[op]).putLong(p.correct[op]);
+            long[] latency = p.latency[op];
+            int counted = 0;
+            for (long count : latency) {
+                if (count != 0) counted++;
+            }
+            buffer.put((byte) counted);
+            for (int b = 0; b < LATENCY_BUCKETS; b++) {
+                if (latency[b] != 0) buffer.put((byte) b).putLong(latency[b]);
+            }
+        }
+        buffer.putInt(start, buffer.position() - start - 4);
+    }
+
+    /** Menulis panjang (diisi belakangan), tipe dan nama; mengembalikan posisi awal record. */
+    private static int begin(byte type, String name) {
+        int start = buffer.position();
+        byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(0).put(type).putShort((short) utf8.length).put(utf8);
+        return start;
+    }
+
+    /**
+     * Nama seperti yang disimpan: dipotong di batas karakter supaya UTF-8-nya
+     * muat MAX_NAME_BYTES. Dipakai sebagai kunci index dan isi file, jadi nama
+     * panjang tetap satu pemain setelah restart.
+     */
+    static String storedName(String name) {
+        if (name.length() * 3 <= MAX_NAME_BYTES) return name;
+        int bytes = 0;
+        int i = 0;
+        while (i < name.length()) {
+            int cp = name.codePointAt(i);
+            int size = cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+            if (bytes + size > MAX_NAME_BYTES) break;
+            bytes += size;
+            i += Character.charCount(cp);
+        }
+        return i == name.length() ? name : name.substring(0, i);
+    }
+
+    private static void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+    }
+
+    /** Memutar ulang log ke index; record terakhir yang terpotong diabaikan. */
+    private static int load(Path path) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (in.remaining() < 4) return 0;
+        if (in.getInt() != MAGIC) throw new IOException("Not a stats file: " + path);
+        loadedBytes = in.position();
+        int records = 0;
+        int[] raceLatency = new int[LATENCY_BUCKETS];
+        while (in.remaining() >= 4) {
+            int length = in.getInt();
+            if (length <= 0 || length > in.remaining()) break;
+            int end = in.position() + length;
+            byte type = in.get();
+            byte[] utf8 = new byte[in.getShort() & 0xFFFF];
+            in.get(utf8);
+            Player p = players.computeIfAbsent(storedName(new String(utf8, StandardCharsets.UTF_8)), Player::new);
+            if (type == RACE) {
+                boolean won = in.get() != 0;
+                int op = in.get();
+                int answers = in.getInt();
+                int correct = in.getInt();
+                Arrays.fill(raceLatency, 0);
+                int counted = in.get() & 0xFF;
+                for (int i = 0; i < counted; i++) {
+                    raceLatency[in.get()] = (int) in.getLong();
+                }
+                add(p, won, op, answers, correct, raceLatency);
+            } else if (type == TOTAL) {
+                p.races += in.getInt();
+                p.wins += in.getInt();
+                for (int op = 0; op < QuestionPool.OPERATIONS.length; op++) {
+                    p.answers[op] += in.getLong();
+                    p.correct[op] += in.getLong();
+                    int counted = in.get() & 0xFF;
+                    for (int i = 0; i < counted; i++) {
+                        p.latency[op][in.get()] += in.getLong();
+                    }
+                }
+            }
+            in.position(end);
+            records++;
+            loadedBytes = end;
+        }
+        return records;
+    }
+
+    /** Menulis satu record TOTAL per pemain ke file baru lalu menggantikan log lama. */
+    private static void compact(Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        List<Player> all = new ArrayList<>(players.values());
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.clear();
+            buffer.putInt(MAGIC);
+            for (Player p : all) {
+                encodeTotal(p);
+                if (buffer.position() > buffer.capacity() / 2) {
+                    flush(out);
+                }
+            }
+            flush(out);
+            out.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        loadedBytes = Files.size(path);
+        Log.info("Stats: compacted {} to {} players", path, all.size());
+    }
+
+    private static void flush(FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /** Dipanggil saat JVM berhenti: selesaikan balapan yang masih antre lalu fsync. */
+    private static void close() {
+        try {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+            channel.force(true);
+            channel.close();
+        } catch (IOException e) {
+            Log.error("Stats: failed to close stats file", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package server;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel: satu thread dan satu array bucket untuk semua timer
+ * server (countdown, jeda soal pertama, reset, tick broadcast, batas waktu
+ * soal, timeout koneksi). Menjadwalkan dan membatalkan timer O(1) tanpa lock,
+ * berbeda dengan ScheduledExecutorService yang memakai heap O(log n) dan lock
+ * antrean; ratusan ribu timer yang menunggu hanya berarti ratusan ribu objek
+ * Timeout kecil di bucket.
+ *
+ * Presisinya satu tick: timer berjalan di tick pertama setelah deadline-nya.
+ * Thread wheel tidak menjalankan pekerjaan room; task diserahkan ke executor
+ * yang diberikan (thread shard) supaya broadcast yang lama tidak menggeser
+ * timer lain. Tanpa executor task dijalankan langsung di thread wheel, jadi
+ * harus singkat.
+ */
+final class TimerWheel {
+    private static final int INIT = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+    // Batas timer baru yang dimasukkan ke bucket per tick, supaya lonjakan schedule tidak menahan tick
+    private static final int MAX_TRANSFER_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final int mask;
+    private final Bucket[] wheel;
+    private final ConcurrentLinkedQueue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pending = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+    private final Thread worker;
+    private volatile boolean stopped = false;
+    // Hanya disentuh thread wheel
+    private long tick = 0;
+
+    /**
+     * @param tickMillis    resolusi timer
+     * @param ticksPerWheel jumlah bucket, dibulatkan ke pangkat dua
+     */
+    TimerWheel(String name, long tickMillis, int ticksPerWheel) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        int size = Integer.highestOneBit(Math.max(1, ticksPerWheel - 1)) << 1;
+        this.mask = size - 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Menjalankan task di executor setelah delay. */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit, Executor executor) {
+        long deadline = System.nanoTime() - startNanos + Math.max(0, unit.toNanos(delay));
+        Timeout timeout = new Timeout(this, task, executor, deadline);
+        pending.incrementAndGet();
+        incoming.add(timeout);
+        return timeout;
+    }
+
+    /** Menjalankan task langsung di thread wheel; hanya untuk task yang sangat singkat. */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return schedule(task, delay, unit, null);
+    }
+
+    /** Jumlah timer yang belum berjalan dan belum dibatalkan. */
+    long pending() {
+        return pending.get();
+    }
+
+    void stop() {
+        stopped = true;
+        LockSupport.unpark(worker);
+    }
+
+    // ===== Thread wheel =====
+
+    private void run() {
+        while (!stopped) {
+            waitForNextTick();
+            if (stopped) break;
+            removeCancelled();
+            transferIncoming();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    /** Tidur sampai tick sekarang selesai; setelah itu semua deadline di bucket-nya sudah lewat. */
+    private void waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (!stopped) {
+            long sleep = deadline - (System.nanoTime() - startNanos);
+            if (sleep <= 0) return;
+            LockSupport.parkNanos(sleep);
+        }
+    }
+
+    private void transferIncoming() {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            Timeout timeout = incoming.poll();
+            if (timeout == null) return;
+            if (timeout.state != INIT) continue;
+            long expiresAt = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (expiresAt - tick) / wheel.length;
+            // Deadline yang sudah lewat jatuh ke tick sekarang, bukan satu putaran lagi
+            long ticks = Math.max(expiresAt, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void dispatch(Timeout timeout) {
+        pending.decrementAndGet();
+        try {
+            if (timeout.executor == null) {
+                timeout.task.run();
+            } else {
+                timeout.executor.execute(timeout.task);
+            }
+        } catch (RejectedExecutionException e) {
+            // executor sudah dimatikan; timernya tidak relevan lagi
+        } catch (Throwable e) {
+            // Task yang gagal tidak boleh mematikan thread wheel
+            Log.error("Timer task failed", e);
+        }
+    }
+
+    /** Daftar berantai ganda timer di satu slot wheel; hanya disentuh thread wheel. */
+    private final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    if (STATE.compareAndSet(timeout, INIT, EXPIRED)) {
+                        dispatch(timeout);
+                    }
+                } else if (timeout.state == CANCELLED) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) return;
+            Timeout next = timeout.next;
+            if (timeout.prev != null) timeout.prev.next = next;
+            if (next != null) next.prev = timeout.prev;
+            if (timeout == head) head = next;
+            if (timeout == tail) tail = timeout.prev;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+        AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+    /** Timer yang sudah dijadwalkan; bisa dibatalkan dari thread mana pun. */
+    static final class Timeout {
+        private final TimerWheel wheel;
+        private final Runnable task;
+        private final Executor executor;
+        private final long deadline;
+        private volatile int state = INIT;
+        // Dipakai thread wheel saja
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(TimerWheel wheel, Runnable task, Executor executor, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.executor = executor;
+            this.deadline = deadline;
+        }
+
+        /** @return false kalau timer sudah berjalan atau sudah dibatalkan */
+        boolean cancel() {
+            if (!STATE.compareAndSet(this, INIT, CANCELLED)) return false;
+            wheel.pending.decrementAndGet();
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        boolean isExpired() {
+            return state == EXPIRED;
+        }
+    }
+}